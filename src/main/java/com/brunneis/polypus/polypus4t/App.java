@@ -19,17 +19,28 @@
  */
 package com.brunneis.polypus.polypus4t;
 
+import com.brunneis.polypus.polypus4t.conf.AerospikeConf;
 import com.brunneis.polypus.polypus4t.conf.Conf;
 import com.brunneis.polypus.polypus4t.conf.ConfLoadException;
 import com.brunneis.polypus.polypus4t.conf.HBaseConf;
+import com.brunneis.polypus.polypus4t.threads.MinerRuntime;
 import com.brunneis.polypus.polypus4t.threads.StreamingMiner;
 import com.brunneis.polypus.polypus4t.threads.ScraperMiner;
+import com.brunneis.polypus.polypus4t.threads.ScraperPipeline;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static com.brunneis.polypus.polypus4t.conf.Conf.DB_PERSISTENCE;
 import com.brunneis.polypus.polypus4t.dao.DigitalPostSingletonFactoryDAO;
+import com.brunneis.polypus.polypus4t.dao.FlushService;
+import com.brunneis.polypus.polypus4t.dao.SeenPostsCache;
+import com.brunneis.polypus.polypus4t.net.FetcherSingletonFactory;
+import com.brunneis.polypus.polypus4t.sched.AdaptiveTermScheduler;
+import com.brunneis.polypus.polypus4t.sched.TermScheduler;
+import com.brunneis.polypus.polypus4t.sched.WorkStealingTermScheduler;
+import java.io.IOException;
 
 public class App {
 
@@ -61,6 +72,18 @@ public class App {
                         value()).hbaseZookeeperPort.value());
                 logger.log(Level.INFO, "HBASE_ZOOKEEPER_QUORUM = {0}", ((HBaseConf) DB_PERSISTENCE
                         .value()).hbaseZookeeperQuorum.value());
+                logger.log(Level.INFO, "HBASE_WRITE_BUFFER = {0}", ((HBaseConf) DB_PERSISTENCE
+                        .value()).hbaseWriteBuffer.value());
+                logger.log(Level.INFO, "HBASE_FLUSH_MS = {0}", ((HBaseConf) DB_PERSISTENCE
+                        .value()).hbaseFlushMs.value());
+                logger.log(Level.INFO, "HBASE_ROW_FORMAT = {0}", ((HBaseConf) DB_PERSISTENCE
+                        .value()).hbaseRowFormat.value());
+                logger.log(Level.INFO, "AEROSPIKE_BATCH = {0}", ((AerospikeConf) Conf.DB_BUFFER
+                        .value()).batch.value());
+                logger.log(Level.INFO, "AEROSPIKE_ASYNC = {0}", ((AerospikeConf) Conf.DB_BUFFER
+                        .value()).async.value());
+                logger.log(Level.INFO, "AEROSPIKE_MAX_INFLIGHT = {0}", ((AerospikeConf) Conf.DB_BUFFER
+                        .value()).maxInflight.value());
                 break;
         }
         logger.log(Level.INFO, "THREADS = {0}", Conf.THREADS.value());
@@ -74,44 +97,81 @@ public class App {
         logger.log(Level.INFO, "TWITTER_AT = {0}", Conf.TWITTER_AT.value());
         logger.log(Level.INFO, "TWITTER_ATS = {0}", Conf.TWITTER_ATS.value());
         logger.log(Level.INFO, "LANGUAGES = {0}", Conf.LANGUAGES.value());
-
-        ArrayList<ScraperMiner> miners = new ArrayList<>();
+        logger.log(Level.INFO, "FETCHER = {0}", Conf.FETCHER.value());
+        logger.log(Level.INFO, "HTTP_MAX_CONNECTIONS = {0}", Conf.HTTP_MAX_CONNECTIONS.value());
+        logger.log(Level.INFO, "HTTP_TIMEOUT = {0}", Conf.HTTP_TIMEOUT.value());
+        logger.log(Level.INFO, "SCHEDULER = {0}", Conf.SCHEDULER.value());
+        logger.log(Level.INFO, "ADAPTIVE_BUDGET = {0}", Conf.ADAPTIVE_BUDGET.value());
+        logger.log(Level.INFO, "ADAPTIVE_MIN_INTERVAL = {0}", Conf.ADAPTIVE_MIN_INTERVAL.value());
+        logger.log(Level.INFO, "ADAPTIVE_MAX_INTERVAL = {0}", Conf.ADAPTIVE_MAX_INTERVAL.value());
+        logger.log(Level.INFO, "PIPELINE = {0}", Conf.PIPELINE.value());
+        logger.log(Level.INFO, "PIPELINE_FETCHERS = {0}", Conf.PIPELINE_FETCHERS.value());
+        logger.log(Level.INFO, "PIPELINE_PARSERS = {0}", Conf.PIPELINE_PARSERS.value());
+        logger.log(Level.INFO, "PIPELINE_QUEUE = {0}", Conf.PIPELINE_QUEUE.value());
+        logger.log(Level.INFO, "RUNTIME = {0}", Conf.RUNTIME.value());
+        logger.log(Level.INFO, "RATE = {0}", Conf.RATE.value());
+        logger.log(Level.INFO, "RATE_MIN = {0}", Conf.RATE_MIN.value());
+        logger.log(Level.INFO, "RATE_MAX = {0}", Conf.RATE_MAX.value());
+        logger.log(Level.INFO, "SEARCH_URL = {0}", Conf.SEARCH_URL.value());
+        logger.log(Level.INFO, "RECORD_DIR = {0}", Conf.RECORD_DIR.value());
+        logger.log(Level.INFO, "SEEN_CACHE = {0}", Conf.SEEN_CACHE.value());
+        logger.log(Level.INFO, "FLUSH_THREADS = {0}", Conf.FLUSH_THREADS.value());
+        logger.log(Level.INFO, "FLUSH_QUEUE = {0}", Conf.FLUSH_QUEUE.value());
+        logger.log(Level.INFO, "FLUSH_POLICY = {0}", Conf.FLUSH_POLICY.value());
+        logger.log(Level.INFO, "FLUSH_MAX_MS = {0}", Conf.FLUSH_MAX_MS.value());
+        logger.log(Level.INFO, "FLUSH_LANES = {0}", Conf.FLUSH_LANES.value());
+        logger.log(Level.INFO, "STREAMING_QUEUE = {0}", Conf.STREAMING_QUEUE.value());
+
+        // Full buffers are written in the background
+        FlushService flushService = FlushService.getInstance();
+
+        ArrayList<Future<?>> miners = new ArrayList<>();
+
+        TermScheduler scheduler = null;
 
         if (Conf.THREADS.value() > 0) {
-            ArrayList<HashMap<String, ArrayList<String>>> termsGroups
-                    = new ArrayList<>();
-
-            // A group for every thread is filled up with an empty HashMap 
-            // with the selected languages
-            for (Integer i = 0; i < Conf.THREADS.value(); i++) {
-                HashMap<String, ArrayList<String>> aux = new HashMap<>();
-                Conf.LANGUAGES.value().forEach((lang) -> {
-                    aux.put(lang, new ArrayList<>());
-                });
-                termsGroups.add(aux);
+            // In pipelined mode the fetchers are the ones taking terms
+            int workers = (Conf.PIPELINE.value() == 1)
+                    ? Conf.PIPELINE_FETCHERS.value() : Conf.THREADS.value();
+
+            // Terms are shared by every scraper-thread through a scheduler
+            switch (Conf.SCHEDULER.value()) {
+                case Conf.ADAPTIVE:
+                    scheduler = new AdaptiveTermScheduler(
+                            workers,
+                            Conf.LANGUAGES.value(),
+                            Conf.TERMS.value(),
+                            Conf.ADAPTIVE_BUDGET.value(),
+                            Conf.ADAPTIVE_MIN_INTERVAL.value(),
+                            Conf.ADAPTIVE_MAX_INTERVAL.value()
+                    );
+                    break;
+                default:
+                    scheduler = new WorkStealingTermScheduler(
+                            workers,
+                            Conf.LANGUAGES.value(),
+                            Conf.TERMS.value()
+                    );
             }
 
-            // Assignment of terms for each scraper-thread (round-robin)
-            int counter = 0;
-            for (String lang : Conf.LANGUAGES.value()) {
-                for (String term : Conf.TERMS.value().get(lang)) {
-                    termsGroups.get(counter).get(lang).add(term);
-                    counter = (counter + 1) % Conf.THREADS.value();
+            if (Conf.PIPELINE.value() == 1) {
+                // Fetch, parse and buffering stages on their own threads
+                ScraperPipeline pipeline = new ScraperPipeline(
+                        "PPLN",
+                        scheduler,
+                        Conf.PIPELINE_FETCHERS.value(),
+                        Conf.PIPELINE_PARSERS.value(),
+                        Conf.PIPELINE_QUEUE.value()
+                );
+                miners.add(MinerRuntime.submit(pipeline.getName(), pipeline));
+            } else {
+                // It is created an instance for each scraper-task with its
+                // ID, each one begins its work as soon as it is submitted
+                for (int i = 1; i <= Conf.THREADS.value(); i++) {
+                    ScraperMiner miner = new ScraperMiner(i + "_SCRPR", scheduler);
+                    miners.add(MinerRuntime.submit(miner.getName(), miner));
                 }
             }
-
-            // It is created an instance for each scraper-thread with their
-            // terms, target language and ID
-            counter = 1;
-            for (HashMap<String, ArrayList<String>> group : termsGroups) {
-                miners.add(new ScraperMiner(counter + "_SCRPR", group));
-                counter++;
-            }
-
-            // Each scraper-thread begins its work
-            miners.forEach((miner) -> {
-                miner.start();
-            });
         }
 
         if (Conf.STREAMING.value() == 1) {
@@ -120,29 +180,39 @@ public class App {
                     && Conf.TWITTER_AT != null && Conf.TWITTER_ATS != null) {
                 // Additionally, a thread for the Streaming API is made
                 StreamingMiner streamingMiner = new StreamingMiner("STRMNG");
-                // The Streaming API thread begins its work
-                streamingMiner.start();
+                // The Streaming API task begins its work
                 try {
-                    streamingMiner.join();
-                } catch (InterruptedException ex) {
+                    MinerRuntime.submit(streamingMiner.getName(), streamingMiner).get();
+                } catch (InterruptedException | ExecutionException ex) {
                     Logger.getLogger(App.class.getName()).log(Level.SEVERE, null, ex);
                 }
             }
         }
 
         if (Conf.THREADS.value() > 0) {
-            // The main thread waits for every thread to finish
+            // The main thread waits for every task to finish
             miners.forEach((miner) -> {
                 try {
-                    miner.join();
-                } catch (InterruptedException ex) {
+                    miner.get();
+                } catch (InterruptedException | ExecutionException ex) {
                     Logger.getLogger(App.class.getName()).log(Level.SEVERE, null, ex);
                 }
             });
+            scheduler.logUtilisation();
         }
+        flushService.close();
+        MinerRuntime.shutdown();
+        SeenPostsCache.getInstance().log();
 
         // Close connections
         DigitalPostSingletonFactoryDAO.getDigitalPostDAOinstance().disconnect();
+        if (Conf.THREADS.value() > 0) {
+            try {
+                FetcherSingletonFactory.getFetcherInstance().close();
+            } catch (IOException ex) {
+                Logger.getLogger(App.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
     }
 
     private static void readParams(String[] args, Logger logger) throws ConfLoadException {
@@ -0,0 +1,381 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.listener.ExistsArrayListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.dao.AerospikePostIndex;
+import com.brunneis.polypus.polypus4t.dao.AsyncAerospikePostIndex;
+import com.brunneis.polypus.polypus4t.dao.RowKeyGenerator;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the Aerospike side of a flush (dedup lookups, ids writes and
+ * input_buffer writes) for several chunk sizes, against a local Aerospike
+ * (see local-environment) or an in-process stand-in that adds a fixed
+ * latency to every round trip. A chunk of 1 costs the same round trips as
+ * looking up every post on its own. With --async the commands of a flush
+ * are issued together, --inflight at most.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.AerospikeDedupBenchmark \
+ *     --posts 10000 --processed 0.3 --latency 200 --chunks 1,100,1000
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.AerospikeDedupBenchmark \
+ *     --host localhost --port 3000
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.AerospikeDedupBenchmark \
+ *     --async --inflight 256 --chunks 100,1000
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class AerospikeDedupBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(AerospikeDedupBenchmark.class.getName());
+
+    /**
+     * Records kept in memory, counting the round trips. It can be shared by
+     * several indexes, as a cluster by several clients.
+     */
+    public static class InMemoryRecords {
+
+        private final ConcurrentHashMap<Key, Boolean> records
+                = new ConcurrentHashMap<>();
+        private final LongAdder roundTrips = new LongAdder();
+
+        public long getRoundTrips() {
+            return this.roundTrips.sum();
+        }
+
+        private boolean[] exists(Key[] keys) {
+            this.roundTrips.increment();
+            boolean[] exists = new boolean[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                exists[i] = this.records.containsKey(keys[i]);
+            }
+            return exists;
+        }
+
+        private void put(WritePolicy policy, Key key) {
+            this.roundTrips.increment();
+            if (policy.recordExistsAction == RecordExistsAction.CREATE_ONLY) {
+                if (this.records.putIfAbsent(key, Boolean.TRUE) != null) {
+                    throw new AerospikeException(ResultCode.KEY_EXISTS_ERROR);
+                }
+            } else {
+                this.records.put(key, Boolean.TRUE);
+            }
+        }
+
+    }
+
+    /**
+     * Keeps the records in memory and waits the given latency on every
+     * round trip.
+     */
+    public static class InMemoryPostIndex extends AerospikePostIndex {
+
+        private final InMemoryRecords records;
+        private final long latencyNanos;
+
+        public InMemoryPostIndex(int chunk, long latencyMicros) {
+            this(chunk, latencyMicros, new InMemoryRecords());
+        }
+
+        public InMemoryPostIndex(
+                int chunk,
+                long latencyMicros,
+                InMemoryRecords records
+        ) {
+            super(chunk, null, () -> {
+            });
+            this.records = records;
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        private void latency() {
+            if (this.latencyNanos > 0) {
+                LockSupport.parkNanos(this.latencyNanos);
+            }
+        }
+
+        @Override
+        protected boolean[] exists(BatchPolicy policy, Key[] keys) {
+            this.latency();
+            return this.records.exists(keys);
+        }
+
+        @Override
+        protected void put(WritePolicy policy, Key key, Bin... bins) {
+            this.latency();
+            this.records.put(policy, key);
+        }
+
+        public long getRoundTrips() {
+            return this.records.roundTrips.sum();
+        }
+
+    }
+
+    /**
+     * Keeps the records in memory and completes every command on a
+     * scheduler thread after the given latency, as the selector threads of
+     * the AsyncClient would.
+     */
+    public static class InMemoryAsyncPostIndex extends AsyncAerospikePostIndex {
+
+        private final InMemoryRecords records;
+        private final long latencyMicros;
+        private final ScheduledExecutorService selectors;
+
+        public InMemoryAsyncPostIndex(int chunk, int maxInflight, long latencyMicros) {
+            this(chunk, maxInflight, latencyMicros, new InMemoryRecords());
+        }
+
+        public InMemoryAsyncPostIndex(
+                int chunk,
+                int maxInflight,
+                long latencyMicros,
+                InMemoryRecords records
+        ) {
+            super(chunk, maxInflight, null, () -> {
+            });
+            this.records = records;
+            this.latencyMicros = latencyMicros;
+            this.selectors = Executors.newScheduledThreadPool(1, runnable -> {
+                Thread thread = new Thread(runnable, "selector");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // The synchronous enqueue() is still available
+        @Override
+        protected void put(WritePolicy policy, Key key, Bin... bins) {
+            this.records.put(policy, key);
+        }
+
+        @Override
+        protected void exists(
+                BatchPolicy policy,
+                ExistsArrayListener listener,
+                Key[] keys
+        ) {
+            this.selectors.schedule(
+                    () -> listener.onSuccess(keys, this.records.exists(keys)),
+                    this.latencyMicros, TimeUnit.MICROSECONDS);
+        }
+
+        @Override
+        protected void put(
+                WritePolicy policy,
+                WriteListener listener,
+                Key key,
+                Bin... bins
+        ) {
+            this.selectors.schedule(() -> {
+                try {
+                    this.records.put(policy, key);
+                } catch (AerospikeException ex) {
+                    listener.onFailure(ex);
+                    return;
+                }
+                listener.onSuccess(key);
+            }, this.latencyMicros, TimeUnit.MICROSECONDS);
+        }
+
+        public long getRoundTrips() {
+            return this.records.roundTrips.sum();
+        }
+
+        public void shutdown() {
+            this.selectors.shutdown();
+        }
+
+    }
+
+    private static List<DigitalPost> newPosts(long firstId, int count) {
+        List<DigitalPost> posts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            posts.add(new DigitalPost(
+                    PostSource.TWITTER,
+                    "en",
+                    "benchmark post " + i,
+                    "Bench Mark",
+                    "benchmark",
+                    1,
+                    firstId + i,
+                    System.currentTimeMillis()
+            ));
+        }
+        return posts;
+    }
+
+    private static long roundTrips(AerospikePostIndex index) {
+        if (index instanceof InMemoryPostIndex) {
+            return ((InMemoryPostIndex) index).getRoundTrips();
+        }
+        if (index instanceof InMemoryAsyncPostIndex) {
+            return ((InMemoryAsyncPostIndex) index).getRoundTrips();
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = null;
+        int port = 3000;
+        int count = 10000;
+        double processed = 0.3;
+        long latency = 200;
+        String[] chunks = {"1", "100", "1000"};
+        boolean async = false;
+        int maxInflight = 256;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--posts":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--processed":
+                    processed = Double.parseDouble(args[++i]);
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(args[++i]);
+                    break;
+                case "--chunks":
+                    chunks = args[++i].split(",");
+                    break;
+                case "--async":
+                    async = true;
+                    break;
+                case "--inflight":
+                    maxInflight = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        Conf.LOGGER_LEVEL.set(Level.WARNING);
+        AerospikeClient client;
+        if (host == null) {
+            client = null;
+        } else if (async) {
+            AsyncClientPolicy policy = new AsyncClientPolicy();
+            policy.asyncMaxCommands = maxInflight;
+            client = new AsyncClient(policy, host, port);
+        } else {
+            client = new AerospikeClient(host, port);
+        }
+        logger.log(Level.INFO,
+                "target: {0} | posts: {1} | already processed: {2} | "
+                + (async ? "async, " + maxInflight + " in flight" : "sync"),
+                new Object[]{(host == null)
+                        ? "in-process, " + latency + " us per round trip"
+                        : host + ":" + port,
+                    count,
+                    processed});
+
+        try {
+            // Ids not used by earlier runs against the same cluster
+            long firstId = System.currentTimeMillis() * 1000;
+            for (String value : chunks) {
+                int chunk = Integer.parseInt(value);
+                AerospikePostIndex index;
+                if (async) {
+                    index = (client == null)
+                            ? new InMemoryAsyncPostIndex(chunk, maxInflight, latency)
+                            : new AsyncAerospikePostIndex(chunk, maxInflight,
+                                    () -> (AsyncClient) client, () -> {
+                            });
+                } else {
+                    index = (client == null)
+                            ? new InMemoryPostIndex(chunk, latency)
+                            : new AerospikePostIndex(chunk, () -> client, () -> {
+                            });
+                }
+
+                List<DigitalPost> posts = newPosts(firstId, count);
+                firstId += count;
+                // Part of the posts were already flushed by another miner
+                index.markProcessed(posts.subList(0, (int) (count * processed)));
+                long roundTripsBefore = roundTrips(index);
+
+                long start = System.nanoTime();
+                List<DigitalPost> fresh = index.markProcessed(posts);
+                RowKeyGenerator generator = RowKeyGenerator.acquire();
+                for (DigitalPost post : fresh) {
+                    post.setRowKey(generator.next(post.getSource().getCodeBytes()));
+                }
+                generator.release();
+                index.enqueueAll(fresh);
+                long elapsed = System.nanoTime() - start;
+
+                logger.log(Level.INFO,
+                        "chunk: {0} | new: {1} | round trips: {2} | ms: {3} | posts/s: {4}",
+                        new Object[]{chunk,
+                            fresh.size(),
+                            (client == null)
+                                    ? roundTrips(index) - roundTripsBefore
+                                    : "-",
+                            elapsed / 1000000,
+                            String.format("%.0f", count * 1e9 / elapsed)}
+                );
+                if (index instanceof InMemoryAsyncPostIndex) {
+                    ((InMemoryAsyncPostIndex) index).shutdown();
+                }
+            }
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.brunneis.polypus.polypus4t.dao.PostEncoder;
+import com.brunneis.polypus.polypus4t.dao.RowKeyGenerator;
+import com.brunneis.polypus.polypus4t.sched.TermTask;
+import com.brunneis.polypus.polypus4t.threads.PageParser;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.hadoop.hbase.client.Put;
+
+/**
+ * Measures the heap allocated by a single thread to turn recorded pages into
+ * the records written on a flush, with no network or server involved. Every
+ * post kept is given a row key and encoded as the DAO does, into its HBase
+ * put and its Aerospike output record. Bytes are reported per extracted
+ * tweet for the parsing, per post kept for the encoding and per tweet for
+ * both, plus the tweets/s of the whole.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.AllocationBenchmark \
+ *     --corpus local-environment/replay --pages 20000 [--compact]
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class AllocationBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(AllocationBenchmark.class.getName());
+
+    private final List<byte[]> pages;
+    private final String language;
+    private final PostEncoder encoder;
+
+    public AllocationBenchmark(List<byte[]> pages, String language,
+            boolean compactRows) {
+        this.pages = pages;
+        this.language = language;
+        this.encoder = new PostEncoder(
+                "polypus_primary", "polypus_secondary", compactRows);
+    }
+
+    /**
+     * Parses and encodes the given number of pages, round-robin over the
+     * corpus.
+     */
+    public void run(int count, boolean report) throws IOException {
+        PageParser parser = new PageParser();
+        TermTask task = new TermTask(this.language, "term");
+        ArrayList<DigitalPost> posts = new ArrayList<>();
+        long tweets = 0;
+        long kept = 0;
+        long parseAllocated = 0;
+        long encodeAllocated = 0;
+        // Keeps the records alive for the compiler
+        long encoded = 0;
+
+        RowKeyGenerator generator = RowKeyGenerator.acquire();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < count; i++) {
+                byte[] page = this.pages.get(i % this.pages.size());
+                long before = ScraperBenchmark.allocatedBytes();
+                task.setNewestPostId(0);
+                tweets += parser.parse(
+                        task,
+                        new ByteArrayInputStream(page),
+                        StandardCharsets.UTF_8,
+                        posts
+                );
+                long parsed = ScraperBenchmark.allocatedBytes();
+
+                for (DigitalPost post : posts) {
+                    post.setRowKey(generator.next(post.getSource().getCodeBytes()));
+                    Put put = this.encoder.toPut(post);
+                    Key key = PostEncoder.outputKey(post);
+                    Bin[] bins = PostEncoder.outputBins(post);
+                    encoded += put.size() + key.hashCode() + bins.length;
+                }
+                kept += posts.size();
+                // Posts are dropped as a dumped buffer would be
+                posts.clear();
+
+                long after = ScraperBenchmark.allocatedBytes();
+                parseAllocated += parsed - before;
+                encodeAllocated += after - parsed;
+            }
+        } finally {
+            generator.release();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (report) {
+            logger.log(Level.INFO,
+                    "pages: {0} | tweets: {1} | posts: {2} | tweets/s: {3}"
+                    + " | parse bytes/tweet: {4} | encode bytes/post: {5}"
+                    + " | total bytes/tweet: {6} | records: {7}",
+                    new Object[]{count,
+                        tweets,
+                        kept,
+                        String.format("%.1f", tweets * 1e9 / elapsed),
+                        (tweets == 0) ? 0 : parseAllocated / tweets,
+                        (kept == 0) ? 0 : encodeAllocated / kept,
+                        (tweets == 0) ? 0
+                                : (parseAllocated + encodeAllocated) / tweets,
+                        encoded}
+            );
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path corpus = Paths.get("local-environment", "replay");
+        String language = "en";
+        int pages = 20000;
+        int warmup = 5000;
+        boolean compactRows = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus":
+                    corpus = Paths.get(args[++i]);
+                    break;
+                case "--lang":
+                    language = args[++i];
+                    break;
+                case "--pages":
+                    pages = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--compact":
+                    compactRows = true;
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        AllocationBenchmark benchmark = new AllocationBenchmark(
+                ReplayServer.loadCorpus(corpus),
+                language,
+                compactRows
+        );
+        logger.log(Level.INFO, "warming up with {0} pages...", warmup);
+        benchmark.run(warmup, false);
+        logger.log(Level.INFO, "measuring {0} pages...", pages);
+        benchmark.run(pages, true);
+    }
+
+}
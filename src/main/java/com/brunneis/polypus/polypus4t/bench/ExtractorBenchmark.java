@@ -0,0 +1,405 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.brunneis.polypus.polypus4t.parse.DecodingReader;
+import com.brunneis.polypus.polypus4t.parse.SearchTimelineReader;
+import com.brunneis.polypus.polypus4t.parse.TweetExtractor;
+import com.brunneis.polypus.polypus4t.vo.ScrapedTweet;
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.StringWebResponse;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the TweetExtractor against a corpus of saved search timeline pages
+ * and compares it with the HtmlUnit DOM + XPath path it replaced, on a single
+ * thread and with no network: tweets/s and bytes allocated per tweet.
+ *
+ * Every page of the checked corpus with a .expected file next to it must
+ * produce exactly its lines, one per tweet container: post id, author id,
+ * screen name, name, language, timestamp and text, tab-separated and with \N
+ * for missing fields. The old path is run on the same pages and its
+ * differences are reported, but they don't fail the check.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.ExtractorBenchmark \
+ *     --pages local-environment/pages --corpus local-environment/replay --seconds 10
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class ExtractorBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(ExtractorBenchmark.class.getName());
+
+    private static final String MISSING = "\\N";
+
+    private interface Extraction {
+
+        /**
+         * @param records receives a line per tweet, or null to only count them
+         * @return the number of tweets of the page
+         */
+        int extract(byte[] page, List<String> records) throws IOException;
+
+        String getName();
+
+    }
+
+    /**
+     * The current path, as run by the PageParser.
+     */
+    private static class StreamingExtraction implements Extraction {
+
+        private final DecodingReader decoder = new DecodingReader();
+        private final SearchTimelineReader timeline
+                = new SearchTimelineReader(null);
+        private final TweetExtractor extractor = new TweetExtractor(null);
+        private final ScrapedTweet tweet = new ScrapedTweet();
+        // Keeps the fields read, as the old path does with its strings
+        private long checksum;
+
+        @Override
+        public int extract(byte[] page, List<String> records)
+                throws IOException {
+            this.timeline.reset(this.decoder.reset(
+                    new ByteArrayInputStream(page),
+                    StandardCharsets.UTF_8
+            ));
+            this.extractor.reset(this.timeline.openItemsHtml());
+
+            int tweets = 0;
+            while (this.extractor.next(this.tweet)) {
+                tweets++;
+                CharSequence content = this.tweet.getContent();
+                this.checksum += this.tweet.getPostId()
+                        + (content == null ? 0 : content.length());
+                if (records != null) {
+                    records.add(format(
+                            this.tweet.getPostId() < 0
+                            ? null : this.tweet.getPostId(),
+                            this.tweet.getAuthorId() < 0
+                            ? null : this.tweet.getAuthorId(),
+                            this.tweet.getAuthorNickname(),
+                            this.tweet.getAuthorName(),
+                            this.tweet.getLanguage(),
+                            this.tweet.getPublicationTimestamp() < 0
+                            ? null : this.tweet.getPublicationTimestamp(),
+                            content
+                    ));
+                }
+            }
+            return tweets;
+        }
+
+        @Override
+        public String getName() {
+            return "streaming";
+        }
+
+    }
+
+    /**
+     * The path replaced by the TweetExtractor: the whole items_html is
+     * parsed into a DOM and three XPath lists are matched by position.
+     */
+    private static class DomExtraction implements Extraction {
+
+        private final WebClient client;
+        private final char[] chunk = new char[8192];
+        private long checksum;
+
+        private DomExtraction() {
+            this.client = new WebClient(BrowserVersion.BEST_SUPPORTED);
+            this.client.getOptions().setCssEnabled(false);
+            this.client.getOptions().setJavaScriptEnabled(false);
+            this.client.getOptions().setAppletEnabled(false);
+        }
+
+        @Override
+        public int extract(byte[] page, List<String> records)
+                throws IOException {
+            StringBuilder html = new StringBuilder(65536);
+            SearchTimelineReader timeline = new SearchTimelineReader(
+                    new InputStreamReader(
+                            new ByteArrayInputStream(page),
+                            StandardCharsets.UTF_8
+                    )
+            );
+            Reader items = timeline.openItemsHtml();
+            int read;
+            while ((read = items.read(this.chunk)) != -1) {
+                html.append(this.chunk, 0, read);
+            }
+
+            HtmlPage dom = this.client.getPageCreator().getHtmlParser()
+                    .parseHtml(
+                            new StringWebResponse(
+                                    html.toString(),
+                                    new URL("http://localhost")
+                            ),
+                            this.client.getCurrentWindow()
+                    );
+            List<?> tweetDataList = dom.getByXPath("//div[@data-tweet-id]");
+            List<?> tweetTextList = dom.getByXPath("//p[@lang]");
+            List<?> tweetTimeList = dom.getByXPath("//span[@data-time-ms]");
+            dom.cleanUp();
+
+            int tweets = tweetDataList.size();
+            for (int i = 0; i < tweets; i++) {
+                // Throws if a list is shorter, as the old path did
+                DomElement tweetData = (DomElement) tweetDataList.get(i);
+                DomElement tweetText = (DomElement) tweetTextList.get(i);
+                DomElement tweetTime = (DomElement) tweetTimeList.get(i);
+
+                String language = tweetText.getAttribute("lang").trim();
+                String content = tweetText.getTextContent().trim();
+                String authorName = tweetData.getAttribute("data-name").trim();
+                String authorNickname = tweetData
+                        .getAttribute("data-screen-name").trim();
+                String authorId = tweetData.getAttribute("data-user-id").trim();
+                String postId = tweetData.getAttribute("data-tweet-id").trim();
+                String publicationTimestamp = tweetTime
+                        .getAttribute("data-time-ms").trim();
+
+                this.checksum += postId.length() + content.length();
+                if (records != null) {
+                    records.add(format(
+                            postId,
+                            authorId,
+                            authorNickname,
+                            authorName,
+                            language,
+                            publicationTimestamp,
+                            content
+                    ));
+                }
+            }
+            return tweets;
+        }
+
+        @Override
+        public String getName() {
+            return "htmlunit";
+        }
+
+    }
+
+    private static String format(Object... fields) {
+        StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            if (fields[i] == null) {
+                line.append(MISSING);
+                continue;
+            }
+            CharSequence value = fields[i].toString();
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                switch (c) {
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    default:
+                        line.append(c);
+                }
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the number of pages whose records don't match
+     */
+    private static int check(Path directory, Extraction extraction,
+            boolean required) throws IOException {
+        ArrayList<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream
+                = Files.newDirectoryStream(directory, "*.json")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+
+        int failed = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Path expectedFile = file.resolveSibling(
+                    name.substring(0, name.length() - ".json".length())
+                    + ".expected"
+            );
+            if (!Files.exists(expectedFile)) {
+                continue;
+            }
+            List<String> expected = Files.readAllLines(
+                    expectedFile,
+                    StandardCharsets.UTF_8
+            );
+
+            ArrayList<String> records = new ArrayList<>();
+            String error = null;
+            try {
+                extraction.extract(Files.readAllBytes(file), records);
+            } catch (IOException | RuntimeException ex) {
+                error = ex.toString();
+            }
+
+            int wrong = Math.abs(expected.size() - records.size());
+            for (int i = 0; i < Math.min(expected.size(), records.size()); i++) {
+                if (!expected.get(i).equals(records.get(i))) {
+                    wrong++;
+                    if (required) {
+                        logger.log(Level.WARNING,
+                                "{0} | tweet {1}\nexpected: {2}\nfound:    {3}",
+                                new Object[]{name, i,
+                                    expected.get(i), records.get(i)});
+                    }
+                }
+            }
+
+            if (wrong == 0 && error == null) {
+                logger.log(Level.INFO, "{0} | {1} | {2} tweets ok",
+                        new Object[]{extraction.getName(), name,
+                            records.size()});
+            } else {
+                failed++;
+                logger.log(required ? Level.SEVERE : Level.INFO,
+                        "{0} | {1} | {2} of {3} tweets wrong{4}",
+                        new Object[]{extraction.getName(), name, wrong,
+                            expected.size(),
+                            error == null ? "" : " | failed: " + error});
+            }
+        }
+        return failed;
+    }
+
+    private static void measure(Extraction extraction, List<byte[]> pages,
+            int warmup, int seconds) throws IOException {
+        long deadline = System.nanoTime() + warmup * 1000000000L;
+        for (int i = 0; System.nanoTime() < deadline; i++) {
+            extraction.extract(pages.get(i % pages.size()), null);
+        }
+
+        long tweets = 0;
+        long count = 0;
+        long allocatedBefore = ScraperBenchmark.allocatedBytes();
+        long start = System.nanoTime();
+        deadline = start + seconds * 1000000000L;
+        while (System.nanoTime() < deadline) {
+            tweets += extraction.extract(
+                    pages.get((int) (count % pages.size())),
+                    null
+            );
+            count++;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = ScraperBenchmark.allocatedBytes() - allocatedBefore;
+
+        logger.log(Level.INFO,
+                "{0} | pages: {1} | tweets: {2} | pages/s: {3}"
+                + " | tweets/s: {4} | bytes/tweet: {5}",
+                new Object[]{extraction.getName(),
+                    count,
+                    tweets,
+                    String.format("%.1f", count * 1e9 / elapsed),
+                    String.format("%.1f", tweets * 1e9 / elapsed),
+                    tweets == 0 ? 0 : allocated / tweets});
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path checked = Paths.get("local-environment", "pages");
+        Path corpus = Paths.get("local-environment", "replay");
+        int seconds = 10;
+        int warmup = 5;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--pages":
+                    checked = Paths.get(args[++i]);
+                    break;
+                case "--corpus":
+                    corpus = Paths.get(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        // HtmlUnit reports every markup error it recovers from
+        Logger.getLogger("com.gargoylesoftware").setLevel(Level.OFF);
+
+        StreamingExtraction streaming = new StreamingExtraction();
+        DomExtraction dom = new DomExtraction();
+
+        int failed = check(checked, streaming, true);
+        check(checked, dom, false);
+
+        if (seconds > 0) {
+            List<byte[]> pages = ReplayServer.loadCorpus(corpus);
+            logger.log(Level.INFO, "corpus: {0} | pages: {1} | seconds: {2}",
+                    new Object[]{corpus, pages.size(), seconds});
+            measure(dom, pages, warmup, seconds);
+            measure(streaming, pages, warmup, seconds);
+        }
+
+        dom.client.close();
+        logger.log(Level.FINE, "checksums: {0} {1}",
+                new Object[]{streaming.checksum, dom.checksum});
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+}
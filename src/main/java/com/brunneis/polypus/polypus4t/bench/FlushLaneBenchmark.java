@@ -0,0 +1,236 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.brunneis.polypus.polypus4t.bench.AerospikeDedupBenchmark.InMemoryAsyncPostIndex;
+import com.brunneis.polypus.polypus4t.bench.AerospikeDedupBenchmark.InMemoryPostIndex;
+import com.brunneis.polypus.polypus4t.bench.AerospikeDedupBenchmark.InMemoryRecords;
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.dao.AerospikePostIndex;
+import com.brunneis.polypus.polypus4t.dao.RowKeyGenerator;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scalability of the Aerospike side of the DAO flush over the number of
+ * flush lanes. --threads flushing threads write buffers of --buffer posts
+ * through the index of their lane (thread i, lane i % lanes), every lane
+ * against the same in-process stand-in of the cluster, which adds --latency
+ * us to every round trip. "monitor" is a single lane with every flush under
+ * one lock, as while dumpBuffer was synchronized.
+ *
+ * With --async every lane bounds its own commands in flight (--inflight)
+ * and has its own callback thread, as a lane with its own AsyncClient.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.FlushLaneBenchmark \
+ *     --threads 8 --lanes monitor,1,2,4,8 --posts 40000 --buffer 1000 --latency 200
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.FlushLaneBenchmark \
+ *     --async --inflight 32 --lanes monitor,1,2,4,8
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class FlushLaneBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(FlushLaneBenchmark.class.getName());
+
+    private final int threads;
+    private final int posts;
+    private final int bufferSize;
+    private final long latency;
+    private final boolean async;
+    private final int maxInflight;
+    // Ids not used by earlier runs
+    private long firstId;
+
+    public FlushLaneBenchmark(
+            int threads,
+            int posts,
+            int bufferSize,
+            long latency,
+            boolean async,
+            int maxInflight
+    ) {
+        this.threads = threads;
+        this.posts = posts;
+        this.bufferSize = bufferSize;
+        this.latency = latency;
+        this.async = async;
+        this.maxInflight = maxInflight;
+        this.firstId = 1;
+    }
+
+    private List<List<DigitalPost>> newBuffers(int count) {
+        List<List<DigitalPost>> buffers = new ArrayList<>();
+        List<DigitalPost> buffer = new ArrayList<>(this.bufferSize);
+        for (int i = 0; i < count; i++) {
+            buffer.add(new DigitalPost(
+                    PostSource.TWITTER,
+                    "en",
+                    "benchmark post " + i,
+                    "Bench Mark",
+                    "benchmark",
+                    1,
+                    this.firstId++,
+                    System.currentTimeMillis()
+            ));
+            if (buffer.size() == this.bufferSize) {
+                buffers.add(buffer);
+                buffer = new ArrayList<>(this.bufferSize);
+            }
+        }
+        if (!buffer.isEmpty()) {
+            buffers.add(buffer);
+        }
+        return buffers;
+    }
+
+    private static void flush(AerospikePostIndex index, List<DigitalPost> buffer) {
+        List<DigitalPost> fresh = index.markProcessed(buffer);
+        RowKeyGenerator generator = RowKeyGenerator.acquire();
+        for (DigitalPost post : fresh) {
+            post.setRowKey(generator.next(post.getSource().getCodeBytes()));
+        }
+        generator.release();
+        index.enqueueAll(fresh);
+    }
+
+    /**
+     * @param lanes a number of lanes or "monitor"
+     */
+    public void run(String lanes) throws Exception {
+        boolean monitor = "monitor".equals(lanes);
+        int count = monitor ? 1 : Integer.parseInt(lanes);
+
+        InMemoryRecords records = new InMemoryRecords();
+        AerospikePostIndex[] indexes = new AerospikePostIndex[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = this.async
+                    ? new InMemoryAsyncPostIndex(this.bufferSize, this.maxInflight, this.latency, records)
+                    : new InMemoryPostIndex(this.bufferSize, this.latency, records);
+        }
+
+        Object lock = new Object();
+        CyclicBarrier start = new CyclicBarrier(this.threads + 1);
+        List<Thread> flushers = new ArrayList<>();
+        for (int t = 0; t < this.threads; t++) {
+            AerospikePostIndex index = indexes[t % count];
+            List<List<DigitalPost>> buffers = this.newBuffers(this.posts / this.threads);
+            Thread flusher = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception ex) {
+                    return;
+                }
+                for (List<DigitalPost> buffer : buffers) {
+                    if (monitor) {
+                        synchronized (lock) {
+                            flush(index, buffer);
+                        }
+                    } else {
+                        flush(index, buffer);
+                    }
+                }
+            }, (t + 1) + "_FLUSH");
+            flusher.start();
+            flushers.add(flusher);
+        }
+
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread flusher : flushers) {
+            flusher.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        for (AerospikePostIndex index : indexes) {
+            if (index instanceof InMemoryAsyncPostIndex) {
+                ((InMemoryAsyncPostIndex) index).shutdown();
+            }
+        }
+
+        logger.log(Level.INFO,
+                "lanes: {0} | round trips: {1} | ms: {2} | posts/s: {3}",
+                new Object[]{lanes,
+                    records.getRoundTrips(),
+                    elapsed / 1000000,
+                    String.format("%.0f", this.posts * 1e9 / elapsed)}
+        );
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 8;
+        int posts = 40000;
+        int bufferSize = 1000;
+        long latency = 200;
+        boolean async = false;
+        int maxInflight = 32;
+        String[] lanes = {"monitor", "1", "2", "4", "8"};
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--posts":
+                    posts = Integer.parseInt(args[++i]);
+                    break;
+                case "--buffer":
+                    bufferSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(args[++i]);
+                    break;
+                case "--async":
+                    async = true;
+                    break;
+                case "--inflight":
+                    maxInflight = Integer.parseInt(args[++i]);
+                    break;
+                case "--lanes":
+                    lanes = args[++i].split(",");
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        Conf.LOGGER_LEVEL.set(Level.WARNING);
+        logger.log(Level.INFO,
+                "threads: {0} | posts: {1} | buffer: {2} | {3} us per round trip | {4}",
+                new Object[]{threads, posts, bufferSize, latency,
+                    async ? "async, " + maxInflight + " in flight per lane" : "sync"});
+
+        FlushLaneBenchmark benchmark = new FlushLaneBenchmark(
+                threads, posts, bufferSize, latency, async, maxInflight);
+        for (String value : lanes) {
+            benchmark.run(value);
+        }
+    }
+
+}
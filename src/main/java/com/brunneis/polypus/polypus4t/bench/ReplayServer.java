@@ -0,0 +1,274 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the search timeline endpoint. The recorded pages of a
+ * corpus directory (every .json file, e.g. saved with RECORD_DIR) are served
+ * round-robin whatever the query, after a configurable latency and with a
+ * configurable mix of 429s, 503s and dropped connections.
+ *
+ * Standalone usage, with SEARCH_URL pointing at the printed URL:
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.ReplayServer \
+ *     --corpus local-environment/replay --port 8080 --latency 150 --jitter 100
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class ReplayServer {
+
+    public static final String PATH = "/i/search/timeline";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<byte[]> pages;
+    private final boolean gzip;
+    private final int latency;
+    private final int jitter;
+    private final double throttled;
+    private final double failed;
+    private final double dropped;
+    private final AtomicLong requests;
+
+    /**
+     * @param port 0 for any free port
+     * @param pages response bodies, served round-robin
+     * @param gzip whether bodies are sent gzip-encoded
+     * @param latency ms before answering every request
+     * @param jitter random ms added to the latency, up to this value
+     * @param throttled ratio of requests answered with 429 and Retry-After
+     * @param failed ratio of requests answered with 503
+     * @param dropped ratio of requests whose connection is closed without
+     * answering
+     */
+    public ReplayServer(
+            int port,
+            List<byte[]> pages,
+            boolean gzip,
+            int latency,
+            int jitter,
+            double throttled,
+            double failed,
+            double dropped
+    ) throws IOException {
+        this.gzip = gzip;
+        this.pages = new ArrayList<>(pages.size());
+        for (byte[] page : pages) {
+            // Bodies are compressed once, not on every request
+            this.pages.add(gzip ? compress(page) : page);
+        }
+        this.latency = latency;
+        this.jitter = jitter;
+        this.throttled = throttled;
+        this.failed = failed;
+        this.dropped = dropped;
+        this.requests = new AtomicLong();
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        // Requests wait for their latency concurrently
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Loads every .json file of a directory, in name order.
+     */
+    public static List<byte[]> loadCorpus(Path directory) throws IOException {
+        ArrayList<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream
+                = Files.newDirectoryStream(directory, "*.json")) {
+            stream.forEach(files::add);
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No .json pages in " + directory);
+        }
+        Collections.sort(files);
+
+        ArrayList<byte[]> pages = new ArrayList<>(files.size());
+        for (Path file : files) {
+            pages.add(Files.readAllBytes(file));
+        }
+        return pages;
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return the value for SEARCH_URL
+     */
+    public String getSearchUrl() {
+        return "http://localhost:" + this.getPort() + PATH;
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long request = this.requests.getAndIncrement();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        try {
+            long delay = this.latency
+                    + ((this.jitter > 0) ? random.nextInt(this.jitter + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException ex) {
+            exchange.close();
+            return;
+        }
+
+        try {
+            double draw = random.nextDouble();
+            if (draw < this.dropped) {
+                // Closed without a response
+                return;
+            }
+            draw -= this.dropped;
+            if (draw < this.throttled) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+            draw -= this.throttled;
+            if (draw < this.failed) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            byte[] page = this.pages.get((int) (request % this.pages.size()));
+            exchange.getResponseHeaders().set(
+                    "Content-Type", "application/json;charset=utf-8"
+            );
+            if (this.gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(page);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] compress(byte[] page) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(page.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(page);
+        }
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger logger = Logger.getLogger(ReplayServer.class.getName());
+
+        Path corpus = Paths.get("local-environment", "replay");
+        int port = 8080;
+        boolean gzip = false;
+        int latency = 0;
+        int jitter = 0;
+        double throttled = 0;
+        double failed = 0;
+        double dropped = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus":
+                    corpus = Paths.get(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--gzip":
+                    gzip = true;
+                    break;
+                case "--latency":
+                    latency = Integer.parseInt(args[++i]);
+                    break;
+                case "--jitter":
+                    jitter = Integer.parseInt(args[++i]);
+                    break;
+                case "--throttled":
+                    throttled = Double.parseDouble(args[++i]);
+                    break;
+                case "--failed":
+                    failed = Double.parseDouble(args[++i]);
+                    break;
+                case "--dropped":
+                    dropped = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        ReplayServer server = new ReplayServer(
+                port,
+                loadCorpus(corpus),
+                gzip,
+                latency,
+                jitter,
+                throttled,
+                failed,
+                dropped
+        );
+        server.start();
+        logger.log(Level.INFO, "Replaying {0} at {1}",
+                new Object[]{corpus, server.getSearchUrl()});
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.brunneis.polypus.polypus4t.dao.CompactPostCodec;
+import com.brunneis.polypus.polypus4t.dao.RowKeyGenerator;
+import com.brunneis.polypus.polypus4t.sched.TermTask;
+import com.brunneis.polypus.polypus4t.threads.PageParser;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the HBase row formats on the posts of a recorded corpus: cells
+ * per post and bytes per post as serialized KeyValues (key and value
+ * lengths, row, family, qualifier, timestamp, type and value), the form in
+ * which cells travel in the RPCs and are kept in the memstore and HFiles.
+ * Every compact row is decoded back and checked against its post.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.RowFormatBenchmark \
+ *     --corpus local-environment/replay --primary polypus_primary --secondary polypus_secondary
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class RowFormatBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(RowFormatBenchmark.class.getName());
+
+    private static final int COLUMN_CELLS = 7;
+
+    private final int primary;
+    private final int secondary;
+
+    public RowFormatBenchmark(String primaryFamily, String secondaryFamily) {
+        this.primary = primaryFamily.length();
+        this.secondary = secondaryFamily.length();
+    }
+
+    private static long keyValueSize(int row, int family, int qualifier, int value) {
+        // keylen + vallen + rowlen + row + famlen + family + qualifier
+        // + timestamp + type + value
+        return 4 + 4 + 2 + row + 1 + family + qualifier + 8 + 1 + value;
+    }
+
+    private static int decimalLength(long value) {
+        return String.valueOf(value).length();
+    }
+
+    private long columnsSize(DigitalPost post) {
+        int row = post.getRowKey().length;
+        return keyValueSize(row, this.primary, 7, post.getContentBytes().length)
+                + keyValueSize(row, this.primary, 8, post.getLanguageBytes().length)
+                + keyValueSize(row, this.primary, 14, 8)
+                + keyValueSize(row, this.secondary, 7, decimalLength(post.getPostId()))
+                + keyValueSize(row, this.secondary, 11, post.getAuthorNameBytes().length)
+                + keyValueSize(row, this.primary, 11, post.getAuthorNicknameBytes().length)
+                + keyValueSize(row, this.secondary, 9, decimalLength(post.getAuthorId()));
+    }
+
+    private long compactSize(DigitalPost post, byte[] primaryCell, byte[] secondaryCell) {
+        int row = post.getRowKey().length;
+        return keyValueSize(row, this.primary, CompactPostCodec.PRIMARY.length, primaryCell.length)
+                + keyValueSize(row, this.secondary, CompactPostCodec.SECONDARY.length, secondaryCell.length);
+    }
+
+    private static boolean sameFields(DigitalPost a, DigitalPost b) {
+        return a.getSource() == b.getSource()
+                && Arrays.equals(a.getRowKey(), b.getRowKey())
+                && Objects.equals(a.getLanguage(), b.getLanguage())
+                && Arrays.equals(a.getContentBytes(), b.getContentBytes())
+                && Arrays.equals(a.getAuthorNameBytes(), b.getAuthorNameBytes())
+                && Arrays.equals(a.getAuthorNicknameBytes(), b.getAuthorNicknameBytes())
+                && a.getAuthorId() == b.getAuthorId()
+                && a.getPostId() == b.getPostId()
+                && a.getPublicationTimestamp() == b.getPublicationTimestamp();
+    }
+
+    public void run(List<DigitalPost> posts) {
+        long columns = 0;
+        long compact = 0;
+        int mismatches = 0;
+        for (DigitalPost post : posts) {
+            byte[] primaryCell = CompactPostCodec.encodePrimary(post);
+            byte[] secondaryCell = CompactPostCodec.encodeSecondary(post);
+            columns += this.columnsSize(post);
+            compact += this.compactSize(post, primaryCell, secondaryCell);
+            if (!sameFields(post, CompactPostCodec.decode(
+                    post.getRowKey(), primaryCell, secondaryCell))) {
+                mismatches++;
+            }
+        }
+
+        int count = Math.max(1, posts.size());
+        logger.log(Level.INFO,
+                "columns | cells/post: {0} | bytes/post: {1}",
+                new Object[]{COLUMN_CELLS, columns / count});
+        logger.log(Level.INFO,
+                "compact | cells/post: 2 | bytes/post: {0} ({1}% of columns)",
+                new Object[]{compact / count,
+                    String.format("%.1f", (columns == 0) ? 0.0 : 100.0 * compact / columns)});
+        logger.log(Level.INFO,
+                "posts: {0} | decoded with differences: {1}",
+                new Object[]{posts.size(), mismatches});
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path corpus = Paths.get("local-environment", "replay");
+        String primaryFamily = "polypus_primary";
+        String secondaryFamily = "polypus_secondary";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus":
+                    corpus = Paths.get(args[++i]);
+                    break;
+                case "--primary":
+                    primaryFamily = args[++i];
+                    break;
+                case "--secondary":
+                    secondaryFamily = args[++i];
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        // Posts of every language in the corpus, with their row keys
+        List<DigitalPost> posts = new ArrayList<>();
+        PageParser parser = new PageParser();
+        RowKeyGenerator generator = RowKeyGenerator.acquire();
+        for (byte[] page : ReplayServer.loadCorpus(corpus)) {
+            for (String language : new String[]{"en", "es"}) {
+                List<DigitalPost> parsed = new ArrayList<>();
+                parser.parse(
+                        new TermTask(language, "term"),
+                        new ByteArrayInputStream(page),
+                        StandardCharsets.UTF_8,
+                        parsed
+                );
+                for (DigitalPost post : parsed) {
+                    post.setRowKey(generator.next(post.getSource().getCodeBytes()));
+                }
+                posts.addAll(parsed);
+            }
+        }
+
+        generator.release();
+
+        new RowFormatBenchmark(primaryFamily, secondaryFamily).run(posts);
+    }
+
+}
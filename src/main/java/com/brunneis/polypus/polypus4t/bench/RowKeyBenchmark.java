@@ -0,0 +1,274 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.brunneis.polypus.polypus4t.dao.RowKeyGenerator;
+import com.brunneis.polypus.polypus4t.dao.RowKeyHelper;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
+import java.util.HashSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Throughput of row key generation under several threads, in the manner of a
+ * JMH throughput benchmark: warmup and measurement iterations of a fixed
+ * time, with every thread generating keys back to back. Reports ops/s (mean
+ * and standard deviation of the iterations), ns/op per thread and bytes
+ * allocated per key.
+ *
+ * helper measures RowKeyHelper.generateId (String keys), generator
+ * RowKeyGenerator.next (byte keys) with a generator checked out of the pool
+ * for every BATCH keys, as a flush does.
+ *
+ * After the measurement every thread generates --check keys at once and
+ * the run fails if any key is repeated.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.RowKeyBenchmark \
+ *     --threads 1,4,16 --warmup 3 --iterations 5 --time 1000 --check 50000
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class RowKeyBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(RowKeyBenchmark.class.getName());
+
+    // Keys per checkout of a generator
+    private static final int BATCH = 1000;
+
+    // Keeps the keys from being optimized away
+    private static volatile int sink;
+
+    private final String mode;
+    private final int threads;
+    private volatile boolean stopped;
+
+    public RowKeyBenchmark(String mode, int threads) {
+        this.mode = mode;
+        this.threads = threads;
+    }
+
+    /**
+     * @return {ops/s, allocated bytes/op} of a single iteration
+     */
+    public double[] iteration(long millis) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(this.threads + 1);
+        final long[] ops = new long[this.threads];
+        final long[] allocated = new long[this.threads];
+        this.stopped = false;
+        Thread[] started = new Thread[this.threads];
+
+        for (int t = 0; t < this.threads; t++) {
+            final int id = t;
+            started[t] = new Thread(() -> {
+                byte[] source = PostSource.TWITTER.getCodeBytes();
+                String code = PostSource.TWITTER.getCode();
+                int local = 0;
+                long count = 0;
+                try {
+                    barrier.await();
+                } catch (Exception ex) {
+                    return;
+                }
+                long allocatedBefore = ScraperBenchmark.allocatedBytes();
+                if (this.mode.equals("generator")) {
+                    while (!this.stopped) {
+                        RowKeyGenerator generator = RowKeyGenerator.acquire();
+                        for (int i = 0; i < BATCH; i++) {
+                            local ^= generator.next(source)[31];
+                        }
+                        generator.release();
+                        count += BATCH;
+                    }
+                } else {
+                    while (!this.stopped) {
+                        local ^= RowKeyHelper.generateId(code).charAt(31);
+                        count++;
+                    }
+                }
+                allocated[id] = ScraperBenchmark.allocatedBytes() - allocatedBefore;
+                ops[id] = count;
+                sink ^= local;
+            }, "ROWKEY_" + t);
+            started[t].start();
+        }
+
+        barrier.await();
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        this.stopped = true;
+        for (Thread thread : started) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        long bytes = 0;
+        for (int t = 0; t < this.threads; t++) {
+            total += ops[t];
+            bytes += allocated[t];
+        }
+        return new double[]{total * 1e9 / elapsed, (total == 0) ? 0 : (double) bytes / total};
+    }
+
+    /**
+     * Every thread generates the given number of keys at once.
+     *
+     * @return the number of repeated keys
+     */
+    public long check(int keysPerThread) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(this.threads);
+        final String[][] keys = new String[this.threads][keysPerThread];
+        Thread[] started = new Thread[this.threads];
+
+        for (int t = 0; t < this.threads; t++) {
+            final String[] generated = keys[t];
+            started[t] = new Thread(() -> {
+                byte[] source = PostSource.TWITTER.getCodeBytes();
+                String code = PostSource.TWITTER.getCode();
+                try {
+                    barrier.await();
+                } catch (Exception ex) {
+                    return;
+                }
+                int i = 0;
+                while (i < generated.length) {
+                    if (this.mode.equals("generator")) {
+                        RowKeyGenerator generator = RowKeyGenerator.acquire();
+                        for (int j = 0; j < BATCH && i < generated.length; j++) {
+                            generated[i++] = RowKeyHelper.toString(generator.next(source));
+                        }
+                        generator.release();
+                    } else {
+                        generated[i++] = RowKeyHelper.generateId(code);
+                    }
+                }
+            }, "ROWKEY_CHECK_" + t);
+            started[t].start();
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+
+        HashSet<String> unique = new HashSet<>();
+        long repeated = 0;
+        for (String[] generated : keys) {
+            for (String key : generated) {
+                if (key == null || !unique.add(key)) {
+                    repeated++;
+                }
+            }
+        }
+        return repeated;
+    }
+
+    public void run(int warmup, int iterations, long millis) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            this.iteration(millis);
+        }
+        double[] results = new double[iterations];
+        double bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            double[] result = this.iteration(millis);
+            results[i] = result[0];
+            bytes += result[1];
+        }
+
+        double mean = 0;
+        for (double result : results) {
+            mean += result;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double result : results) {
+            variance += (result - mean) * (result - mean);
+        }
+        double deviation = Math.sqrt(variance / Math.max(1, iterations - 1));
+
+        logger.log(Level.INFO,
+                "mode: {0} | threads: {1} | ops/s: {2} +- {3} | ns/op per thread: {4} | bytes/op: {5}",
+                new Object[]{this.mode,
+                    this.threads,
+                    String.format("%.0f", mean),
+                    String.format("%.0f", deviation),
+                    String.format("%.1f", this.threads * 1e9 / mean),
+                    String.format("%.1f", bytes / iterations)}
+        );
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = {"helper", "generator"};
+        String[] threads = {"1", "4", "16"};
+        int warmup = 3;
+        int iterations = 5;
+        long time = 1000;
+        int check = 50000;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mode":
+                    modes = args[++i].split(",");
+                    break;
+                case "--threads":
+                    threads = args[++i].split(",");
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--time":
+                    time = Long.parseLong(args[++i]);
+                    break;
+                case "--check":
+                    check = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        boolean failed = false;
+        for (String mode : modes) {
+            for (String count : threads) {
+                RowKeyBenchmark benchmark
+                        = new RowKeyBenchmark(mode, Integer.parseInt(count));
+                benchmark.run(warmup, iterations, time);
+                if (check > 0) {
+                    long repeated = benchmark.check(check);
+                    logger.log(repeated == 0 ? Level.INFO : Level.SEVERE,
+                            "mode: {0} | threads: {1} | keys: {2} | repeated: {3}",
+                            new Object[]{mode, count,
+                                (long) check * Integer.parseInt(count), repeated});
+                    failed |= repeated > 0;
+                }
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+}
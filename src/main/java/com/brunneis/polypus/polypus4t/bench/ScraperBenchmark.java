@@ -0,0 +1,289 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.bench;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.net.FetchResponse;
+import com.brunneis.polypus.polypus4t.net.Fetcher;
+import com.brunneis.polypus.polypus4t.net.FetcherSingletonFactory;
+import com.brunneis.polypus.polypus4t.sched.TermTask;
+import com.brunneis.polypus.polypus4t.threads.PageParser;
+import com.brunneis.polypus.polypus4t.threads.ScraperMiner;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the fetch and parse path of the scrapers against a local
+ * ReplayServer, with no network access: pages/s, tweets/s and bytes
+ * allocated per tweet by the scraper threads. The watermarks are reset
+ * before every request so each page is parsed in full.
+ *
+ * <pre>
+ * java -cp twitter-crawler.jar com.brunneis.polypus.polypus4t.bench.ScraperBenchmark \
+ *     --corpus local-environment/replay --threads 4 --seconds 30 --latency 50
+ * </pre>
+ *
+ * @author brunneis
+ */
+public class ScraperBenchmark {
+
+    private static final Logger logger
+            = Logger.getLogger(ScraperBenchmark.class.getName());
+
+    private final Fetcher fetcher;
+    private final int threads;
+    private final String language;
+
+    public ScraperBenchmark(Fetcher fetcher, int threads, String language) {
+        this.fetcher = fetcher;
+        this.threads = threads;
+        this.language = language;
+    }
+
+    /**
+     * Runs every scraper thread for the given time.
+     */
+    public Round run(int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1000000000L;
+        Round round = new Round();
+        Worker[] workers = new Worker[this.threads];
+        Thread[] started = new Thread[this.threads];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < this.threads; i++) {
+            workers[i] = new Worker(i, deadline);
+            started[i] = new Thread(workers[i], (i + 1) + "_BENCH");
+            started[i].start();
+        }
+        for (int i = 0; i < this.threads; i++) {
+            started[i].join();
+            round.add(workers[i]);
+        }
+        round.elapsed = System.nanoTime() - start;
+        return round;
+    }
+
+    private class Worker implements Runnable {
+
+        private final String term;
+        private final long deadline;
+        private long pages;
+        private long tweets;
+        private long posts;
+        private long errors;
+        private long allocated;
+
+        private Worker(int id, long deadline) {
+            this.term = "term" + id;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            PageParser parser = new PageParser();
+            TermTask task = new TermTask(language, this.term);
+            ArrayList<DigitalPost> parsed = new ArrayList<>();
+            long allocatedBefore = allocatedBytes();
+
+            while (System.nanoTime() < this.deadline) {
+                task.setNewestPostId(0);
+                parsed.clear();
+                try (FetchResponse response = ScraperMiner.fetchPage(
+                        fetcher,
+                        ScraperMiner.getSearchUrl(language, this.term, 0)
+                )) {
+                    this.tweets += parser.parse(
+                            task,
+                            response.getBody(),
+                            response.getCharset(),
+                            parsed
+                    );
+                    this.posts += parsed.size();
+                    this.pages++;
+                } catch (IOException ex) {
+                    this.errors++;
+                }
+            }
+
+            this.allocated = allocatedBytes() - allocatedBefore;
+        }
+
+    }
+
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    public static class Round {
+
+        private long pages;
+        private long tweets;
+        private long posts;
+        private long errors;
+        private long allocated;
+        private long elapsed;
+
+        private void add(Worker worker) {
+            this.pages += worker.pages;
+            this.tweets += worker.tweets;
+            this.posts += worker.posts;
+            this.errors += worker.errors;
+            this.allocated += worker.allocated;
+        }
+
+        public double getPagesPerSecond() {
+            return this.pages * 1e9 / this.elapsed;
+        }
+
+        public double getTweetsPerSecond() {
+            return this.tweets * 1e9 / this.elapsed;
+        }
+
+        public long getBytesPerTweet() {
+            return (this.tweets == 0) ? 0 : this.allocated / this.tweets;
+        }
+
+        public void log(Logger logger) {
+            logger.log(Level.INFO,
+                    "pages: {0} | tweets: {1} | posts: {2} | errors: {3}"
+                    + " | pages/s: {4} | tweets/s: {5} | bytes/tweet: {6}",
+                    new Object[]{this.pages,
+                        this.tweets,
+                        this.posts,
+                        this.errors,
+                        String.format("%.1f", this.getPagesPerSecond()),
+                        String.format("%.1f", this.getTweetsPerSecond()),
+                        this.getBytesPerTweet()}
+            );
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path corpus = Paths.get("local-environment", "replay");
+        String fetcherType = "http";
+        String language = "en";
+        int threads = 4;
+        int seconds = 30;
+        int warmup = 5;
+        boolean gzip = false;
+        int latency = 0;
+        int jitter = 0;
+        double throttled = 0;
+        double failed = 0;
+        double dropped = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus":
+                    corpus = Paths.get(args[++i]);
+                    break;
+                case "--fetcher":
+                    fetcherType = args[++i];
+                    break;
+                case "--lang":
+                    language = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--gzip":
+                    gzip = true;
+                    break;
+                case "--latency":
+                    latency = Integer.parseInt(args[++i]);
+                    break;
+                case "--jitter":
+                    jitter = Integer.parseInt(args[++i]);
+                    break;
+                case "--throttled":
+                    throttled = Double.parseDouble(args[++i]);
+                    break;
+                case "--failed":
+                    failed = Double.parseDouble(args[++i]);
+                    break;
+                case "--dropped":
+                    dropped = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    logger.log(Level.SEVERE, "Unknown option {0}", args[i]);
+                    System.exit(1);
+            }
+        }
+
+        ReplayServer server = new ReplayServer(
+                0,
+                ReplayServer.loadCorpus(corpus),
+                gzip,
+                latency,
+                jitter,
+                throttled,
+                failed,
+                dropped
+        );
+        server.start();
+
+        // Only the settings read by the fetch and parse path, without a
+        // configuration file. Requests are not paced.
+        Conf.LOGGER_LEVEL.set(Level.WARNING);
+        Conf.SEARCH_URL.set(server.getSearchUrl());
+        Conf.RECORD_DIR.set(null);
+        Conf.RATE.set(0.0);
+        Conf.FETCHER.set(fetcherType.equalsIgnoreCase("htmlunit")
+                ? Conf.HTMLUNIT : Conf.HTTP_CLIENT);
+        Conf.HTTP_MAX_CONNECTIONS.set(threads);
+        Conf.HTTP_TIMEOUT.set(5000);
+
+        logger.log(Level.INFO,
+                "corpus: {0} | fetcher: {1} | threads: {2} | latency: {3}+{4} ms",
+                new Object[]{corpus, fetcherType, threads, latency, jitter});
+
+        try (Fetcher fetcher = FetcherSingletonFactory.getFetcherInstance()) {
+            ScraperBenchmark benchmark
+                    = new ScraperBenchmark(fetcher, threads, language);
+            if (warmup > 0) {
+                logger.log(Level.INFO, "warming up for {0} s...", warmup);
+                benchmark.run(warmup);
+            }
+            logger.log(Level.INFO, "measuring for {0} s...", seconds);
+            benchmark.run(seconds).log(logger);
+        } finally {
+            server.stop();
+        }
+    }
+
+}
@@ -29,5 +29,10 @@ public class AerospikeConf extends DBConf {
 
     public final Locker<String> host = new Locker<>();
     public final Locker<Integer> port = new Locker<>();
+    // Posts per batch lookup of the ids set
+    public final Locker<Integer> batch = new Locker<>();
+    // Asynchronous client (1) and its max commands in flight
+    public final Locker<Integer> async = new Locker<>();
+    public final Locker<Integer> maxInflight = new Locker<>();
 
 }
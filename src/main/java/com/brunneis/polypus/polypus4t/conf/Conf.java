@@ -45,6 +45,16 @@ public class Conf {
     public final static int HBASE = 002;
     public final static int AEROSPIKE = 003;
     public final static int HBASE_AEROSPIKE = 101;
+    public final static int HTTP_CLIENT = 201;
+    public final static int HTMLUNIT = 202;
+    public final static int STEALING = 301;
+    public final static int ADAPTIVE = 302;
+    public final static int PLATFORM = 401;
+    public final static int VIRTUAL = 402;
+    public final static int FLUSH_BLOCK = 501;
+    public final static int FLUSH_DROP = 502;
+    public final static int ROW_COLUMNS = 601;
+    public final static int ROW_COMPACT = 602;
 
     public final static Locker<String> CONF_FILE = new Locker<>();
     public final static Locker<Level> LOGGER_LEVEL = new Locker<>();
@@ -64,6 +74,30 @@ public class Conf {
     public final static Locker<String> TWITTER_CS = new Locker<>();
     public final static Locker<String> TWITTER_AT = new Locker<>();
     public final static Locker<String> TWITTER_ATS = new Locker<>();
+    public final static Locker<Integer> FETCHER = new Locker<>();
+    public final static Locker<Integer> HTTP_MAX_CONNECTIONS = new Locker<>();
+    public final static Locker<Integer> HTTP_TIMEOUT = new Locker<>();
+    public final static Locker<Integer> SCHEDULER = new Locker<>();
+    public final static Locker<Integer> ADAPTIVE_BUDGET = new Locker<>();
+    public final static Locker<Integer> ADAPTIVE_MIN_INTERVAL = new Locker<>();
+    public final static Locker<Integer> ADAPTIVE_MAX_INTERVAL = new Locker<>();
+    public final static Locker<Integer> PIPELINE = new Locker<>();
+    public final static Locker<Integer> PIPELINE_FETCHERS = new Locker<>();
+    public final static Locker<Integer> PIPELINE_PARSERS = new Locker<>();
+    public final static Locker<Integer> PIPELINE_QUEUE = new Locker<>();
+    public final static Locker<Integer> RUNTIME = new Locker<>();
+    public final static Locker<Double> RATE = new Locker<>();
+    public final static Locker<Double> RATE_MIN = new Locker<>();
+    public final static Locker<Double> RATE_MAX = new Locker<>();
+    public final static Locker<String> SEARCH_URL = new Locker<>();
+    public final static Locker<String> RECORD_DIR = new Locker<>();
+    public final static Locker<Integer> SEEN_CACHE = new Locker<>();
+    public final static Locker<Integer> FLUSH_THREADS = new Locker<>();
+    public final static Locker<Integer> FLUSH_QUEUE = new Locker<>();
+    public final static Locker<Integer> FLUSH_POLICY = new Locker<>();
+    public final static Locker<Integer> FLUSH_MAX_MS = new Locker<>();
+    public final static Locker<Integer> FLUSH_LANES = new Locker<>();
+    public final static Locker<Integer> STREAMING_QUEUE = new Locker<>();
 
     public static void loadConf() throws ConfLoadException {
         if (!CONF_FILE.isLocked()) {
@@ -106,6 +140,34 @@ public class Conf {
                             throw new ConfLoadException();
                         }
 
+                        if (properties.getProperty("HBASE_WRITE_BUFFER") != null) {
+                            ((HBaseConf) DB_PERSISTENCE.value()).hbaseWriteBuffer.set(Math.max(1, Long.parseLong(properties.getProperty("HBASE_WRITE_BUFFER"))));
+                        } else {
+                            // HBase default (2 MB)
+                            ((HBaseConf) DB_PERSISTENCE.value()).hbaseWriteBuffer.set(2097152L);
+                        }
+
+                        if (properties.getProperty("HBASE_FLUSH_MS") != null) {
+                            ((HBaseConf) DB_PERSISTENCE.value()).hbaseFlushMs.set(Math.max(0, Integer.parseInt(properties.getProperty("HBASE_FLUSH_MS"))));
+                        } else {
+                            ((HBaseConf) DB_PERSISTENCE.value()).hbaseFlushMs.set(1000);
+                        }
+
+                        if (properties.getProperty("HBASE_ROW_FORMAT") != null) {
+                            switch (properties.getProperty("HBASE_ROW_FORMAT").toUpperCase()) {
+                                case "COLUMNS":
+                                    ((HBaseConf) DB_PERSISTENCE.value()).hbaseRowFormat.set(ROW_COLUMNS);
+                                    break;
+                                case "COMPACT":
+                                    ((HBaseConf) DB_PERSISTENCE.value()).hbaseRowFormat.set(ROW_COMPACT);
+                                    break;
+                                default:
+                                    throw new ConfLoadException();
+                            }
+                        } else {
+                            ((HBaseConf) DB_PERSISTENCE.value()).hbaseRowFormat.set(ROW_COLUMNS);
+                        }
+
                         // Optional secondary storage
                         if (properties.getProperty("DB_BUFFER") != null) {
                             STORE_MODE.set(HBASE_AEROSPIKE);
@@ -118,6 +180,25 @@ public class Conf {
                                     ((AerospikeConf) DB_BUFFER.value()).host.set(properties.getProperty("AEROSPIKE_HOST"));
                                     ((AerospikeConf) DB_BUFFER.value()).port.set(Integer.parseInt(properties.getProperty("AEROSPIKE_PORT")));
 
+                                    if (properties.getProperty("AEROSPIKE_BATCH") != null) {
+                                        ((AerospikeConf) DB_BUFFER.value()).batch.set(Math.max(1, Integer.parseInt(properties.getProperty("AEROSPIKE_BATCH"))));
+                                    } else {
+                                        ((AerospikeConf) DB_BUFFER.value()).batch.set(1000);
+                                    }
+
+                                    if (properties.getProperty("AEROSPIKE_ASYNC") != null
+                                            && Integer.parseInt(properties.getProperty("AEROSPIKE_ASYNC")) != 0) {
+                                        ((AerospikeConf) DB_BUFFER.value()).async.set(1);
+                                    } else {
+                                        ((AerospikeConf) DB_BUFFER.value()).async.set(0);
+                                    }
+
+                                    if (properties.getProperty("AEROSPIKE_MAX_INFLIGHT") != null) {
+                                        ((AerospikeConf) DB_BUFFER.value()).maxInflight.set(Math.max(1, Integer.parseInt(properties.getProperty("AEROSPIKE_MAX_INFLIGHT"))));
+                                    } else {
+                                        ((AerospikeConf) DB_BUFFER.value()).maxInflight.set(256);
+                                    }
+
                                     if (((AerospikeConf) DB_BUFFER.value()).host.isNull()
                                             || ((AerospikeConf) DB_BUFFER.value()).port.isNull()) {
                                         throw new ConfLoadException();
@@ -242,6 +323,195 @@ public class Conf {
                 TWITTER_ATS.set(null);
             }
 
+            if (properties.getProperty("FETCHER") != null) {
+                switch (properties.getProperty("FETCHER").toUpperCase()) {
+                    case "HTTP":
+                        FETCHER.set(HTTP_CLIENT);
+                        break;
+                    case "HTMLUNIT":
+                        FETCHER.set(HTMLUNIT);
+                        break;
+                    default:
+                        throw new ConfLoadException();
+                }
+            } else {
+                FETCHER.set(HTTP_CLIENT);
+            }
+
+            if (properties.getProperty("HTTP_MAX_CONNECTIONS") != null) {
+                HTTP_MAX_CONNECTIONS.set(Integer.parseInt(properties.getProperty("HTTP_MAX_CONNECTIONS")));
+            } else {
+                // One keep-alive connection for each scraper-thread
+                HTTP_MAX_CONNECTIONS.set(THREADS.value());
+            }
+
+            if (properties.getProperty("HTTP_TIMEOUT") != null) {
+                HTTP_TIMEOUT.set(Integer.parseInt(properties.getProperty("HTTP_TIMEOUT")));
+            } else {
+                HTTP_TIMEOUT.set(5000);
+            }
+
+            if (properties.getProperty("SCHEDULER") != null) {
+                switch (properties.getProperty("SCHEDULER").toUpperCase()) {
+                    case "STEALING":
+                        SCHEDULER.set(STEALING);
+                        break;
+                    case "ADAPTIVE":
+                        SCHEDULER.set(ADAPTIVE);
+                        break;
+                    default:
+                        throw new ConfLoadException();
+                }
+            } else {
+                SCHEDULER.set(STEALING);
+            }
+
+            if (properties.getProperty("ADAPTIVE_BUDGET") != null) {
+                ADAPTIVE_BUDGET.set(Integer.parseInt(properties.getProperty("ADAPTIVE_BUDGET")));
+            } else {
+                // Unlimited
+                ADAPTIVE_BUDGET.set(0);
+            }
+
+            if (properties.getProperty("ADAPTIVE_MIN_INTERVAL") != null) {
+                ADAPTIVE_MIN_INTERVAL.set(Integer.parseInt(properties.getProperty("ADAPTIVE_MIN_INTERVAL")));
+            } else {
+                ADAPTIVE_MIN_INTERVAL.set(60000);
+            }
+
+            if (properties.getProperty("ADAPTIVE_MAX_INTERVAL") != null) {
+                ADAPTIVE_MAX_INTERVAL.set(Integer.parseInt(properties.getProperty("ADAPTIVE_MAX_INTERVAL")));
+            } else {
+                ADAPTIVE_MAX_INTERVAL.set(3600000);
+            }
+
+            if (properties.getProperty("PIPELINE") != null) {
+                if (Integer.parseInt(properties.getProperty("PIPELINE")) == 0) {
+                    PIPELINE.set(0);
+                } else {
+                    PIPELINE.set(1);
+                }
+            } else {
+                PIPELINE.set(0);
+            }
+
+            if (properties.getProperty("PIPELINE_FETCHERS") != null) {
+                PIPELINE_FETCHERS.set(Math.max(1, Integer.parseInt(properties.getProperty("PIPELINE_FETCHERS"))));
+            } else {
+                PIPELINE_FETCHERS.set(THREADS.value());
+            }
+
+            if (properties.getProperty("PIPELINE_PARSERS") != null) {
+                PIPELINE_PARSERS.set(Math.max(1, Integer.parseInt(properties.getProperty("PIPELINE_PARSERS"))));
+            } else {
+                PIPELINE_PARSERS.set(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            }
+
+            if (properties.getProperty("PIPELINE_QUEUE") != null) {
+                PIPELINE_QUEUE.set(Math.max(1, Integer.parseInt(properties.getProperty("PIPELINE_QUEUE"))));
+            } else {
+                PIPELINE_QUEUE.set(64);
+            }
+
+            if (properties.getProperty("RUNTIME") != null) {
+                switch (properties.getProperty("RUNTIME").toUpperCase()) {
+                    case "PLATFORM":
+                        RUNTIME.set(PLATFORM);
+                        break;
+                    case "VIRTUAL":
+                        RUNTIME.set(VIRTUAL);
+                        break;
+                    default:
+                        throw new ConfLoadException();
+                }
+            } else {
+                RUNTIME.set(PLATFORM);
+            }
+
+            if (properties.getProperty("RATE") != null) {
+                RATE.set(Math.max(0, Double.parseDouble(properties.getProperty("RATE"))));
+            } else {
+                // Requests paced by SLEEP
+                RATE.set(0.0);
+            }
+
+            if (properties.getProperty("RATE_MIN") != null) {
+                RATE_MIN.set(Math.max(0.01, Double.parseDouble(properties.getProperty("RATE_MIN"))));
+            } else {
+                RATE_MIN.set(Math.min(1.0, RATE.value()));
+            }
+
+            if (properties.getProperty("RATE_MAX") != null) {
+                RATE_MAX.set(Double.parseDouble(properties.getProperty("RATE_MAX")));
+            } else {
+                RATE_MAX.set(RATE.value());
+            }
+
+            if (properties.getProperty("SEARCH_URL") != null) {
+                SEARCH_URL.set(properties.getProperty("SEARCH_URL"));
+            } else {
+                SEARCH_URL.set("https://twitter.com/i/search/timeline");
+            }
+
+            if (properties.getProperty("RECORD_DIR") != null) {
+                RECORD_DIR.set(properties.getProperty("RECORD_DIR"));
+            } else {
+                RECORD_DIR.set(null);
+            }
+
+            if (properties.getProperty("SEEN_CACHE") != null) {
+                SEEN_CACHE.set(Math.max(0, Integer.parseInt(properties.getProperty("SEEN_CACHE"))));
+            } else {
+                SEEN_CACHE.set(500000);
+            }
+
+            if (properties.getProperty("FLUSH_THREADS") != null) {
+                FLUSH_THREADS.set(Math.max(0, Integer.parseInt(properties.getProperty("FLUSH_THREADS"))));
+            } else {
+                FLUSH_THREADS.set(1);
+            }
+
+            if (properties.getProperty("FLUSH_LANES") != null) {
+                FLUSH_LANES.set(Math.max(1, Integer.parseInt(properties.getProperty("FLUSH_LANES"))));
+            } else {
+                // A lane per flushing thread
+                FLUSH_LANES.set(Math.max(1, FLUSH_THREADS.value()));
+            }
+
+            if (properties.getProperty("FLUSH_QUEUE") != null) {
+                FLUSH_QUEUE.set(Math.max(1, Integer.parseInt(properties.getProperty("FLUSH_QUEUE"))));
+            } else {
+                FLUSH_QUEUE.set(16);
+            }
+
+            if (properties.getProperty("FLUSH_POLICY") != null) {
+                switch (properties.getProperty("FLUSH_POLICY").toUpperCase()) {
+                    case "BLOCK":
+                        FLUSH_POLICY.set(FLUSH_BLOCK);
+                        break;
+                    case "DROP":
+                        FLUSH_POLICY.set(FLUSH_DROP);
+                        break;
+                    default:
+                        throw new ConfLoadException();
+                }
+            } else {
+                FLUSH_POLICY.set(FLUSH_BLOCK);
+            }
+
+            if (properties.getProperty("FLUSH_MAX_MS") != null) {
+                FLUSH_MAX_MS.set(Math.max(0, Integer.parseInt(properties.getProperty("FLUSH_MAX_MS"))));
+            } else {
+                // Buffers are only flushed by size
+                FLUSH_MAX_MS.set(0);
+            }
+
+            if (properties.getProperty("STREAMING_QUEUE") != null) {
+                STREAMING_QUEUE.set(Math.max(2, Integer.parseInt(properties.getProperty("STREAMING_QUEUE"))));
+            } else {
+                STREAMING_QUEUE.set(16384);
+            }
+
         } catch (NumberFormatException ex) {
             throw new ConfLoadException();
         }
@@ -31,5 +31,10 @@ public class HBaseConf extends DBConf {
     public final Locker<String> hbaseZookeeperPort = new Locker<>();
     public final Locker<String> hbasePrimaryFamily = new Locker<>();
     public final Locker<String> hbaseSecondaryFamily = new Locker<>();
+    // Bytes buffered before the puts are sent and max time they wait (ms)
+    public final Locker<Long> hbaseWriteBuffer = new Locker<>();
+    public final Locker<Integer> hbaseFlushMs = new Locker<>();
+    // Conf.ROW_COLUMNS or Conf.ROW_COMPACT
+    public final Locker<Integer> hbaseRowFormat = new Locker<>();
 
 }
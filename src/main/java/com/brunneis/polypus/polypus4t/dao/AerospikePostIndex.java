@@ -0,0 +1,249 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Aerospike side of a flush: the ids set remembers the posts already
+ * processed by any miner, and the new ones are queued in the input_buffer
+ * of the classifier.
+ *
+ * Posts are looked up in chunks with a single batch exists() and only the
+ * absent ones are written, create-only, so a post processed meanwhile by
+ * another miner is rejected with KEY_EXISTS_ERROR and left out as well.
+ *
+ * @author brunneis
+ */
+public class AerospikePostIndex {
+
+    static final Bin PROCESSED = new Bin("processed", true);
+    // Writes of a processed mark, retried here and not by the client
+    private static final int MARK_ATTEMPTS = 6;
+    private static final EnumMap<PostSource, String> NAMESPACES
+            = new EnumMap<>(PostSource.class);
+
+    static {
+        for (PostSource source : PostSource.values()) {
+            // Source as namespace (twttr)
+            NAMESPACES.put(source, "polypus_" + source.getCode());
+        }
+    }
+
+    // Also used by the asynchronous index
+    final int chunk;
+    final Runnable onError;
+    final BatchPolicy batchPolicy;
+    final WritePolicy processedPolicy;
+    final WritePolicy outputPolicy;
+    private final Supplier<AerospikeClient> client;
+
+    Logger logger;
+
+    /**
+     * @param chunk posts per batch lookup
+     * @param client the current client, it may change after an error
+     * @param onError called after an Aerospike error, to reconnect
+     */
+    public AerospikePostIndex(
+            int chunk,
+            Supplier<AerospikeClient> client,
+            Runnable onError
+    ) {
+        logger = Logger.getLogger(this.getClass().getName());
+        logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.chunk = Math.max(1, chunk);
+        this.client = client;
+        this.onError = onError;
+
+        this.batchPolicy = new BatchPolicy();
+        this.batchPolicy.timeout = 1000;
+        this.batchPolicy.retryOnTimeout = true;
+        this.batchPolicy.maxRetries = 5;
+        this.batchPolicy.sleepBetweenRetries = 50;
+
+        this.processedPolicy = new WritePolicy();
+        // The record is removed after 2 days (seconds)
+        this.processedPolicy.expiration = 172800;
+        // Write only if record does not exist
+        this.processedPolicy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+        this.processedPolicy.timeout = 1000;
+        // A timed-out write may have been applied, see mark()
+        this.processedPolicy.retryOnTimeout = false;
+        this.processedPolicy.maxRetries = 0;
+        this.processedPolicy.sleepBetweenRetries = 50;
+
+        this.outputPolicy = new WritePolicy();
+        // The record never expires
+        this.outputPolicy.expiration = -1;
+        // Write only if record does not exist
+        this.outputPolicy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+        this.outputPolicy.timeout = 1000;
+        this.outputPolicy.retryOnTimeout = true;
+        this.outputPolicy.maxRetries = 5;
+        this.outputPolicy.sleepBetweenRetries = 50;
+    }
+
+    /**
+     * Marks the given posts as processed.
+     *
+     * @return the posts that weren't processed yet
+     */
+    public List<DigitalPost> markProcessed(Iterable<DigitalPost> posts) {
+        List<DigitalPost> fresh = new ArrayList<>();
+        DigitalPost[] pending = new DigitalPost[this.chunk];
+        Key[] keys = new Key[this.chunk];
+        int count = 0;
+        for (DigitalPost post : posts) {
+            pending[count] = post;
+            keys[count] = idKey(post);
+            count++;
+            if (count == this.chunk) {
+                this.markChunk(pending, keys, count, fresh);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            this.markChunk(pending, keys, count, fresh);
+        }
+        return fresh;
+    }
+
+    static Key idKey(DigitalPost post) {
+        return new Key(
+                NAMESPACES.get(post.getSource()),
+                "ids", // set
+                // Post ids were always keyed as decimal strings
+                String.valueOf(post.getPostId())
+        );
+    }
+
+    private void markChunk(
+            DigitalPost[] pending,
+            Key[] keys,
+            int count,
+            List<DigitalPost> fresh
+    ) {
+        Key[] batch = (count == keys.length) ? keys : Arrays.copyOf(keys, count);
+        boolean[] exists;
+        try {
+            exists = this.exists(this.batchPolicy, batch);
+        } catch (AerospikeException ex) {
+            logger.log(Level.SEVERE, "ids exists", ex);
+            this.onError.run();
+            // Posts are rather written twice than lost
+            exists = new boolean[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!exists[i] && this.mark(batch[i])) {
+                fresh.add(pending[i]);
+            }
+        }
+        Arrays.fill(pending, 0, count, null);
+    }
+
+    /**
+     * Create-only write of the processed mark of a post. After a failed
+     * attempt the mark may have been written anyway, so KEY_EXISTS_ERROR on
+     * a retry is taken as our own write.
+     *
+     * @return false if the post was processed by another miner since the
+     * lookup
+     */
+    private boolean mark(Key key) {
+        for (int attempt = 0; attempt < MARK_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(this.processedPolicy.sleepBetweenRetries);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return true;
+                }
+            }
+            try {
+                this.put(this.processedPolicy, key, PROCESSED);
+                return true;
+            } catch (AerospikeException ex) {
+                if (ex.getResultCode() == ResultCode.KEY_EXISTS_ERROR) {
+                    return attempt > 0;
+                }
+                if (attempt == MARK_ATTEMPTS - 1) {
+                    logger.log(Level.SEVERE, "ids put", ex);
+                }
+            }
+        }
+        this.onError.run();
+        // Posts are rather written twice than lost
+        return true;
+    }
+
+    /**
+     * A single round trip to the cluster, as every put.
+     */
+    protected boolean[] exists(BatchPolicy policy, Key[] keys) {
+        return this.client.get().exists(policy, keys);
+    }
+
+    protected void put(WritePolicy policy, Key key, Bin... bins) {
+        this.client.get().put(policy, key, bins);
+    }
+
+    /**
+     * Queues the posts, with their row keys already assigned, for the next
+     * stage.
+     */
+    public void enqueueAll(List<DigitalPost> posts) {
+        for (DigitalPost post : posts) {
+            this.enqueue(post);
+        }
+    }
+
+    public void enqueue(DigitalPost post) {
+        try {
+            this.put(this.outputPolicy,
+                    PostEncoder.outputKey(post), PostEncoder.outputBins(post));
+        } catch (AerospikeException ex) {
+            if (ex.getResultCode() != ResultCode.KEY_EXISTS_ERROR) {
+                logger.log(Level.SEVERE, "input_buffer put", ex);
+                this.onError.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.listener.ExistsArrayListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * AerospikePostIndex issuing the commands of a flush through an AsyncClient.
+ * The batch lookups of every chunk, then the ids writes and then the
+ * input_buffer writes of the whole flush are in flight together, at most
+ * maxInflight commands at a time, and completed by callbacks on the
+ * selector threads.
+ *
+ * The client doesn't retry. The failed commands of a round are collected
+ * and issued again together, ATTEMPTS times at most.
+ *
+ * @author brunneis
+ */
+public class AsyncAerospikePostIndex extends AerospikePostIndex {
+
+    private static final int ATTEMPTS = 3;
+    // Max time waiting for the callbacks of a round (ms)
+    private static final long ROUND_TIMEOUT = 30000;
+
+    private final Supplier<AsyncClient> client;
+    private final Semaphore inflight;
+
+    /**
+     * @param chunk posts per batch lookup
+     * @param maxInflight max commands waiting for their callback
+     * @param client the current client, it may change after an error
+     * @param onError called after an Aerospike error, to reconnect
+     */
+    public AsyncAerospikePostIndex(
+            int chunk,
+            int maxInflight,
+            Supplier<AsyncClient> client,
+            Runnable onError
+    ) {
+        super(chunk, () -> client.get(), onError);
+        this.client = client;
+        this.inflight = new Semaphore(Math.max(1, maxInflight));
+
+        // Failures are retried by rounds
+        this.batchPolicy.maxRetries = 0;
+        this.processedPolicy.maxRetries = 0;
+        this.outputPolicy.maxRetries = 0;
+    }
+
+    @Override
+    public List<DigitalPost> markProcessed(Iterable<DigitalPost> posts) {
+        List<DigitalPost> pending = new ArrayList<>();
+        for (DigitalPost post : posts) {
+            pending.add(post);
+        }
+        int count = pending.size();
+        Key[] keys = new Key[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = idKey(pending.get(i));
+        }
+
+        List<Integer> chunks = new ArrayList<>();
+        for (int start = 0; start < count; start += this.chunk) {
+            chunks.add(start);
+        }
+        // Chunks whose lookup fails are taken as new, posts are rather
+        // written twice than lost
+        boolean[] exists = new boolean[count];
+        this.runAll("ids exists", chunks, (start, round) -> {
+            int end = Math.min(start + this.chunk, count);
+            this.exists(this.batchPolicy, new ExistsArrayListener() {
+                @Override
+                public void onSuccess(Key[] batch, boolean[] found) {
+                    round.success(start, () -> System.arraycopy(
+                            found, 0, exists, start, end - start));
+                }
+
+                @Override
+                public void onFailure(AerospikeException ex) {
+                    round.failure(start, ex);
+                }
+            }, Arrays.copyOfRange(keys, start, end));
+        });
+
+        List<Integer> absent = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (!exists[i]) {
+                absent.add(i);
+            }
+        }
+        boolean[] duplicated = new boolean[count];
+        this.runAll("ids put", absent, (i, round) -> {
+            this.put(this.processedPolicy, new WriteListener() {
+                @Override
+                public void onSuccess(Key key) {
+                    round.success(i);
+                }
+
+                @Override
+                public void onFailure(AerospikeException ex) {
+                    if (ex.getResultCode() == ResultCode.KEY_EXISTS_ERROR) {
+                        // Processed since the lookup, unless the record was
+                        // written by a previous attempt
+                        round.success(i, () -> duplicated[i] = round.attempt == 0);
+                    } else {
+                        round.failure(i, ex);
+                    }
+                }
+            }, keys[i], PROCESSED);
+        });
+
+        List<DigitalPost> fresh = new ArrayList<>(absent.size());
+        for (int i : absent) {
+            if (!duplicated[i]) {
+                fresh.add(pending.get(i));
+            }
+        }
+        return fresh;
+    }
+
+    @Override
+    public void enqueueAll(List<DigitalPost> posts) {
+        List<Integer> indexes = new ArrayList<>(posts.size());
+        for (int i = 0; i < posts.size(); i++) {
+            indexes.add(i);
+        }
+        this.runAll("input_buffer put", indexes, (i, round) -> {
+            DigitalPost post = posts.get(i);
+            this.put(this.outputPolicy, new WriteListener() {
+                @Override
+                public void onSuccess(Key key) {
+                    round.success(i);
+                }
+
+                @Override
+                public void onFailure(AerospikeException ex) {
+                    if (ex.getResultCode() == ResultCode.KEY_EXISTS_ERROR) {
+                        round.success(i);
+                    } else {
+                        round.failure(i, ex);
+                    }
+                }
+            }, PostEncoder.outputKey(post), PostEncoder.outputBins(post));
+        });
+    }
+
+    /**
+     * Issues a command per item and waits for every callback. The items
+     * whose command failed are issued again in the next round.
+     *
+     * @return the items that failed in every attempt
+     */
+    private <T> List<T> runAll(
+            String operation,
+            List<T> items,
+            BiConsumer<T, Round<T>> command
+    ) {
+        List<T> remaining = items;
+        AerospikeException error = null;
+        for (int attempt = 0; attempt < ATTEMPTS && !remaining.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(this.batchPolicy.sleepBetweenRetries);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            Round<T> round = new Round<>(attempt, remaining.size());
+            for (T item : remaining) {
+                try {
+                    this.inflight.acquire();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    round.skip(item);
+                    continue;
+                }
+                round.pending.add(item);
+                try {
+                    command.accept(item, round);
+                } catch (AerospikeException ex) {
+                    // Rejected before being sent, no callback will come
+                    round.failure(item, ex);
+                }
+            }
+
+            boolean completed;
+            try {
+                completed = round.done.await(ROUND_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                completed = false;
+            }
+            if (!completed) {
+                round.expire();
+            }
+
+            remaining = new ArrayList<>(round.failed);
+            if (round.error != null) {
+                error = round.error;
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            logger.log(Level.SEVERE,
+                    operation + " | " + remaining.size()
+                    + " commands failed after " + ATTEMPTS + " attempts",
+                    error);
+            this.onError.run();
+        }
+        return remaining;
+    }
+
+    /**
+     * Commands issued together. Every item is settled once, by the callback
+     * of its command or by the timeout of the round, and the result of the
+     * other one is ignored. A permit is held until the callback of its
+     * command, even after a timeout, so late commands still count as in
+     * flight.
+     */
+    private final class Round<T> {
+
+        private final int attempt;
+        private final Set<T> pending;
+        private final Queue<T> failed;
+        private final CountDownLatch done;
+        private volatile AerospikeException error;
+
+        private Round(int attempt, int size) {
+            this.attempt = attempt;
+            this.pending = ConcurrentHashMap.newKeySet();
+            this.failed = new ConcurrentLinkedQueue<>();
+            this.done = new CountDownLatch(size);
+        }
+
+        private void success(T item) {
+            this.success(item, null);
+        }
+
+        /**
+         * @param result applied only if the item wasn't settled yet
+         */
+        private void success(T item, Runnable result) {
+            if (this.pending.remove(item)) {
+                if (result != null) {
+                    result.run();
+                }
+                this.done.countDown();
+            }
+            inflight.release();
+        }
+
+        private void failure(T item, AerospikeException ex) {
+            if (this.pending.remove(item)) {
+                this.error = ex;
+                this.failed.add(item);
+                this.done.countDown();
+            }
+            inflight.release();
+        }
+
+        /**
+         * Fails the items still waiting for their callback, whose permits
+         * are released when it comes.
+         */
+        private void expire() {
+            for (T item : this.pending) {
+                if (this.pending.remove(item)) {
+                    this.failed.add(item);
+                    this.done.countDown();
+                }
+            }
+            // The callbacks that settled an item first are about to finish
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    this.done.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Not issued at all.
+         */
+        private void skip(T item) {
+            this.failed.add(item);
+            this.done.countDown();
+        }
+
+    }
+
+    protected void exists(
+            BatchPolicy policy,
+            ExistsArrayListener listener,
+            Key[] keys
+    ) {
+        this.client.get().exists(policy, listener, keys);
+    }
+
+    protected void put(
+            WritePolicy policy,
+            WriteListener listener,
+            Key key,
+            Bin... bins
+    ) {
+        this.client.get().put(policy, listener, key, bins);
+    }
+
+}
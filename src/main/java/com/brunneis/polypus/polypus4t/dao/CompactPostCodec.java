@@ -0,0 +1,209 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.hadoop.hbase.client.Result;
+
+/**
+ * Compact HBase row format: the fields of a post packed into two binary
+ * cells instead of seven columns. The primary family keeps the fields read
+ * by the next stages (qualifier "p") and the secondary family the rest
+ * (qualifier "s"), as in the column format.
+ *
+ * Both cells start with the format version. Numbers are 8-byte big-endian
+ * and texts UTF-8, preceded by their length as an unsigned varint:
+ *
+ * <pre>
+ * p: version, post_timestamp, language, content, author_nick
+ * s: version, post_id, author_id, author_name
+ * </pre>
+ *
+ * The source of the post is taken from the row key.
+ *
+ * @author brunneis
+ */
+public final class CompactPostCodec {
+
+    public static final byte VERSION = 1;
+    public static final byte[] PRIMARY = {'p'};
+    public static final byte[] SECONDARY = {'s'};
+
+    private CompactPostCodec() {
+    }
+
+    public static byte[] encodePrimary(DigitalPost post) {
+        byte[] language = post.getLanguageBytes();
+        byte[] content = post.getContentBytes();
+        byte[] authorNickname = post.getAuthorNicknameBytes();
+        byte[] cell = new byte[1 + 8
+                + textLength(language)
+                + textLength(content)
+                + textLength(authorNickname)];
+        int offset = 0;
+        cell[offset++] = VERSION;
+        offset = putLong(cell, offset, post.getPublicationTimestamp());
+        offset = putText(cell, offset, language);
+        offset = putText(cell, offset, content);
+        putText(cell, offset, authorNickname);
+        return cell;
+    }
+
+    public static byte[] encodeSecondary(DigitalPost post) {
+        byte[] authorName = post.getAuthorNameBytes();
+        byte[] cell = new byte[1 + 8 + 8 + textLength(authorName)];
+        int offset = 0;
+        cell[offset++] = VERSION;
+        offset = putLong(cell, offset, post.getPostId());
+        offset = putLong(cell, offset, post.getAuthorId());
+        putText(cell, offset, authorName);
+        return cell;
+    }
+
+    /**
+     * Reads a post written in the compact format.
+     */
+    public static DigitalPost decode(
+            Result result,
+            byte[] primaryFamily,
+            byte[] secondaryFamily
+    ) {
+        return decode(
+                result.getRow(),
+                result.getValue(primaryFamily, PRIMARY),
+                result.getValue(secondaryFamily, SECONDARY)
+        );
+    }
+
+    /**
+     * @throws IllegalArgumentException if a cell is missing, truncated or of
+     * an unknown version
+     */
+    public static DigitalPost decode(byte[] rowKey, byte[] primary, byte[] secondary) {
+        if (rowKey == null || primary == null || secondary == null) {
+            throw new IllegalArgumentException("Missing row key or cell");
+        }
+        Reader p = new Reader(primary);
+        Reader s = new Reader(secondary);
+
+        long publicationTimestamp = p.readLong();
+        String language = new String(p.readText(), StandardCharsets.UTF_8);
+        byte[] content = p.readText();
+        byte[] authorNickname = p.readText();
+
+        long postId = s.readLong();
+        long authorId = s.readLong();
+        byte[] authorName = s.readText();
+
+        DigitalPost post = new DigitalPost(
+                PostSource.fromCode(RowKeyGenerator.getSourceCode(rowKey)),
+                language,
+                content,
+                authorName,
+                authorNickname,
+                authorId,
+                postId,
+                publicationTimestamp
+        );
+        post.setRowKey(rowKey);
+        return post;
+    }
+
+    private static int textLength(byte[] text) {
+        int length = text.length;
+        int prefix = 1;
+        while ((length >>>= 7) != 0) {
+            prefix++;
+        }
+        return prefix + text.length;
+    }
+
+    private static int putLong(byte[] cell, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            cell[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+        return offset + 8;
+    }
+
+    private static int putText(byte[] cell, int offset, byte[] text) {
+        int length = text.length;
+        while ((length & ~0x7F) != 0) {
+            cell[offset++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        cell[offset++] = (byte) length;
+        System.arraycopy(text, 0, cell, offset, text.length);
+        return offset + text.length;
+    }
+
+    private static final class Reader {
+
+        private final byte[] cell;
+        private int offset;
+
+        private Reader(byte[] cell) {
+            if (cell.length == 0 || cell[0] != VERSION) {
+                throw new IllegalArgumentException("Unknown cell version");
+            }
+            this.cell = cell;
+            this.offset = 1;
+        }
+
+        private void require(int length) {
+            if (length < 0 || this.cell.length - this.offset < length) {
+                throw new IllegalArgumentException("Truncated cell");
+            }
+        }
+
+        private long readLong() {
+            this.require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (this.cell[this.offset++] & 0xFF);
+            }
+            return value;
+        }
+
+        private byte[] readText() {
+            int length = 0;
+            for (int shift = 0;; shift += 7) {
+                this.require(1);
+                if (shift > 28) {
+                    throw new IllegalArgumentException("Bad text length");
+                }
+                byte b = this.cell[this.offset++];
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            this.require(length);
+            byte[] text = Arrays.copyOfRange(this.cell, this.offset, this.offset + length);
+            this.offset += length;
+            return text;
+        }
+
+    }
+
+}
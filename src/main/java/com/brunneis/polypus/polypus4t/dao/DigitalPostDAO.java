@@ -19,8 +19,7 @@
  */
 package com.brunneis.polypus.polypus4t.dao;
 
-import com.brunneis.polypus.polypus4t.vo.DigitalPost;
-import java.util.HashMap;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
 
 /**
  *
@@ -28,7 +27,12 @@ import java.util.HashMap;
  */
 public interface DigitalPostDAO {
 
-    public void dumpBuffer(HashMap<String, DigitalPost> buffer);
+    public void dumpBuffer(DigitalPostBuffer buffer);
+
+    /**
+     * Posts given to dumpBuffer() that couldn't be stored.
+     */
+    public long getLostPosts();
 
     public void connect();
 
@@ -20,21 +20,20 @@
 package com.brunneis.polypus.polypus4t.dao;
 
 import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
-
-import com.aerospike.client.AerospikeClient;
-import com.aerospike.client.AerospikeException;
-import com.aerospike.client.Bin;
-import com.aerospike.client.Key;
-import com.aerospike.client.policy.RecordExistsAction;
-import com.aerospike.client.policy.WritePolicy;
-import com.brunneis.polypus.polypus4t.conf.AerospikeConf;
+
 import com.brunneis.polypus.polypus4t.conf.Conf;
 import static com.brunneis.polypus.polypus4t.conf.Conf.DB_PERSISTENCE;
 import com.brunneis.polypus.polypus4t.conf.HBaseConf;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.hadoop.conf.Configuration;
@@ -43,10 +42,11 @@ import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Put;
-import org.apache.hadoop.hbase.client.Table;
-import org.apache.hadoop.hbase.util.Bytes;
 
 /**
+ * Safe for concurrent dumpBuffer() calls: every flushing thread goes through
+ * one of the FLUSH_LANES lanes, each with its own Aerospike client, and all
+ * of them share the HBase writer.
  *
  * @author brunneis
  */
@@ -55,18 +55,76 @@ public final class DigitalPostSingletonHBaseAerospikeDAO implements DigitalPostD
     private static final DigitalPostSingletonHBaseAerospikeDAO INSTANCE
             = new DigitalPostSingletonHBaseAerospikeDAO();
 
+    // Max time a replaced HBase session waits for its writers (ms)
+    private static final long HBASE_DRAIN_MS = 60000;
+
     private Logger logger;
 
-    // HBASE
-    private Table hbaseTable;
-    private Connection hbaseConn;
+    // HBASE, replaced as a whole on reconnection
+    private final AtomicReference<HBaseSession> hbase;
+    private final AtomicBoolean hbaseReconnecting;
     private final Configuration hbaseConf;
-    private final String hbasePrimaryFamily;
-    private final String hbaseSecondaryFamily;
     private final String hbaseTableName;
+    private final PostEncoder hbaseEncoder;
+    // Puts given up on, by every session
+    private final LongAdder hbaseLost;
 
     // AEROSPIKE
-    private AerospikeClient aerospikeClient;
+    private final FlushLane[] lanes;
+
+    /**
+     * Connection and writer, closed once retired and left by the threads
+     * still writing through them.
+     */
+    private static final class HBaseSession {
+
+        private final Connection connection;
+        private final HBasePostWriter writer;
+        private final AtomicInteger writers;
+        private volatile boolean retired;
+
+        private HBaseSession(Connection connection, HBasePostWriter writer) {
+            this.connection = connection;
+            this.writer = writer;
+            this.writers = new AtomicInteger();
+            this.retired = false;
+        }
+
+        /**
+         * @return false if the session was retired, it must not be used
+         */
+        private boolean enter() {
+            this.writers.incrementAndGet();
+            if (this.retired) {
+                this.writers.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private void leave() {
+            this.writers.decrementAndGet();
+        }
+
+        /**
+         * No thread enters afterwards. Waits for the ones inside, at most
+         * the given time.
+         *
+         * @return false if some thread is still inside
+         */
+        private boolean retire(long millis) {
+            this.retired = true;
+            long deadline = System.currentTimeMillis() + millis;
+            while (this.writers.get() > 0) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return true;
+        }
+
+    }
 
     private DigitalPostSingletonHBaseAerospikeDAO() {
         logger = Logger.getLogger(DigitalPostSingletonHBaseAerospikeDAO.class.getName());
@@ -83,12 +141,23 @@ public final class DigitalPostSingletonHBaseAerospikeDAO implements DigitalPostD
                 ((HBaseConf) DB_PERSISTENCE.value()).hbaseZookeeperPort.value()
         );
 
-        this.hbasePrimaryFamily
-                = ((HBaseConf) DB_PERSISTENCE.value()).hbasePrimaryFamily.value();
-        this.hbaseSecondaryFamily
-                = ((HBaseConf) DB_PERSISTENCE.value()).hbaseSecondaryFamily.value();
         this.hbaseTableName
                 = DB_PERSISTENCE.value().NAME.value();
+        this.hbaseEncoder = new PostEncoder(
+                ((HBaseConf) DB_PERSISTENCE.value()).hbasePrimaryFamily.value(),
+                ((HBaseConf) DB_PERSISTENCE.value()).hbaseSecondaryFamily.value(),
+                ((HBaseConf) DB_PERSISTENCE.value())
+                        .hbaseRowFormat.value() == Conf.ROW_COMPACT
+        );
+
+        this.hbase = new AtomicReference<>();
+        this.hbaseReconnecting = new AtomicBoolean();
+        this.hbaseLost = new LongAdder();
+
+        this.lanes = new FlushLane[Conf.FLUSH_LANES.value()];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new FlushLane(i);
+        }
 
         // Start clients
         this.connect();
@@ -98,176 +167,160 @@ public final class DigitalPostSingletonHBaseAerospikeDAO implements DigitalPostD
         return INSTANCE;
     }
 
-    private void connectAerospike() {
-        String host = ((AerospikeConf) Conf.DB_BUFFER.value()).host.value();
-        Integer port = ((AerospikeConf) Conf.DB_BUFFER.value()).port.value();
-        // Single Seed Node
-        this.aerospikeClient = new AerospikeClient(host, port);
-    }
-
-    private void disconnectAerospike() {
-        this.aerospikeClient.close();
-    }
-
-    private void reconnectAerospike() {
-        this.disconnectAerospike();
-        this.connectAerospike();
-    }
-
-    private void connectHbase() {
+    private HBaseSession connectHbase() {
         try {
-            this.hbaseConn = ConnectionFactory.createConnection(hbaseConf);
-            this.hbaseTable = hbaseConn
-                    .getTable(TableName.valueOf(this.hbaseTableName));
-
+            Connection connection = ConnectionFactory.createConnection(hbaseConf);
+            return new HBaseSession(connection, new HBasePostWriter(
+                    connection,
+                    TableName.valueOf(this.hbaseTableName),
+                    ((HBaseConf) DB_PERSISTENCE.value()).hbaseWriteBuffer.value(),
+                    ((HBaseConf) DB_PERSISTENCE.value()).hbaseFlushMs.value(),
+                    this.hbaseLost
+            ));
         } catch (IOException ex) {
             logger.log(Level.SEVERE, "Error accessing HBase table.", ex);
             System.exit(1);
+            return null;
         }
     }
 
-    private void disconnectHbase() {
+    private void disconnectHbase(HBaseSession session) {
+        if (session == null) {
+            return;
+        }
+        if (!session.retire(HBASE_DRAIN_MS)) {
+            logger.log(Level.WARNING,
+                    "closing the HBase session with writes in progress");
+        }
         try {
-            // Calling close on the HTable instance will invoke flushCommits
-            this.hbaseTable.close();
-            this.hbaseConn.close();
+            // The buffered puts are sent before closing
+            session.writer.close();
+            session.connection.close();
         } catch (IOException ex) {
             logger.log(Level.SEVERE, null, ex);
         }
     }
 
-    private void reconnectHbase() {
-        this.disconnectHbase();
-        this.connectHbase();
+    /**
+     * Replaces the failed session unless another thread already did it or is
+     * doing it, without making the other flushes wait.
+     */
+    private void reconnectHbase(HBaseSession failed) {
+        if (this.hbase.get() != failed
+                || !this.hbaseReconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (this.hbase.compareAndSet(failed, this.connectHbase())) {
+                this.disconnectHbase(failed);
+            }
+        } finally {
+            this.hbaseReconnecting.set(false);
+        }
     }
 
     @Override
-    public synchronized void connect() {
-        this.connectAerospike();
-        this.connectHbase();
+    public void connect() {
+        for (FlushLane lane : this.lanes) {
+            lane.connect();
+        }
+        this.disconnectHbase(this.hbase.getAndSet(this.connectHbase()));
     }
 
     @Override
-    public synchronized void disconnect() {
-        this.disconnectAerospike();
-        this.disconnectHbase();
+    public void disconnect() {
+        for (FlushLane lane : this.lanes) {
+            lane.disconnect();
+        }
+        this.disconnectHbase(this.hbase.getAndSet(null));
+    }
+
+    /**
+     * Assigns the row keys of the given posts with a generator checked out
+     * of the pool.
+     */
+    private static void assignRowKeys(List<DigitalPost> posts) {
+        RowKeyGenerator generator = RowKeyGenerator.acquire();
+        try {
+            for (DigitalPost post : posts) {
+                post.setRowKey(generator.next(post.getSource().getCodeBytes()));
+            }
+        } finally {
+            generator.release();
+        }
     }
 
     @Override
-    public synchronized void dumpBuffer(HashMap<String, DigitalPost> buffer) {
+    public void dumpBuffer(DigitalPostBuffer buffer) {
+        AerospikePostIndex aerospikeIndex
+                = this.lanes[FlushLane.forCurrentThread(this.lanes.length)].getIndex();
         // HBase puts to be written
         List<Put> puts = new ArrayList<>();
+        // Posts not processed yet, looked up in batches
+        List<DigitalPost> fresh = aerospikeIndex.markProcessed(buffer);
+
+        // Row keys are only generated for the posts to be written
+        assignRowKeys(fresh);
+
+        // Write to Aerospike output buffer
+        aerospikeIndex.enqueueAll(fresh);
+
+        for (DigitalPost post : fresh) {
+            // Keep the post for batch insert in HBase
+            puts.add(this.hbaseEncoder.toPut(post));
+        }
 
-        WritePolicy wpolicyOutputBuffer = new WritePolicy();
-        // The record never expires
-        wpolicyOutputBuffer.expiration = -1;
-        // Write only if record does not exist
-        wpolicyOutputBuffer.recordExistsAction = RecordExistsAction.CREATE_ONLY;
-        wpolicyOutputBuffer.timeout = 1000;
-        wpolicyOutputBuffer.retryOnTimeout = true;
-        wpolicyOutputBuffer.maxRetries = 5;
-        wpolicyOutputBuffer.sleepBetweenRetries = 50;
-
-        WritePolicy wpolicyProcessedPosts = new WritePolicy();
-        // The record is removed after 2 days (seconds)
-        wpolicyProcessedPosts.expiration = 172800;
-        // Write if record does not exist, otherwise replace it
-        wpolicyProcessedPosts.recordExistsAction = RecordExistsAction.REPLACE;
-        wpolicyProcessedPosts.timeout = 1000;
-        wpolicyProcessedPosts.retryOnTimeout = true;
-        wpolicyProcessedPosts.maxRetries = 5;
-        wpolicyProcessedPosts.sleepBetweenRetries = 50;
-
-        // Buffer filter
-        buffer.keySet().forEach((key) -> {
-            Key keyToHash = new Key(
-                    // Source as namespace (twttr)
-                    "polypus_" + buffer.get(key).getSource(),
-                    "ids", // set
-                    key
-            );
-            boolean postExists = false;
+        // Stored puts are sent to HBase in the background, failed ones are
+        // retried by the writer
+        this.writeHbase(puts);
+    }
+
+    /**
+     * Writes through the current session. After an error the session is
+     * replaced, if no other thread did it already, and the puts are written
+     * once more through the new one.
+     */
+    private void writeHbase(List<Put> puts) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            HBaseSession session = this.enterHbase();
+            if (session == null) {
+                // Disconnected
+                break;
+            }
+            IOException error;
             try {
-                postExists = aerospikeClient.exists(null, keyToHash);
-            } catch (AerospikeException ex) {
-                logger.log(Level.SEVERE, null, ex);
-                this.reconnectAerospike();
+                session.writer.write(puts);
+                return;
+            } catch (IOException ex) {
+                error = ex;
+            } finally {
+                session.leave();
             }
-            // Check new posts
-            if (!postExists) {
-                try {
-                    this.aerospikeClient.put(
-                            wpolicyProcessedPosts,
-                            keyToHash,
-                            new Bin("processed", true)
-                    );
-                } catch (AerospikeException ex) {
-                    logger.log(Level.SEVERE, "ids put", ex);
-
-                    this.reconnectAerospike();
-                }
+            logger.log(Level.SEVERE, null, error);
+            // Out of the session, it waits for its writers to be closed
+            this.reconnectHbase(session);
+        }
+        this.hbaseLost.add(puts.size());
+        logger.log(Level.SEVERE, "{0} HBase puts lost", puts.size());
+    }
 
-                // Write to Aerospike output buffer
-                // Polypus identifier
-                Bin browkey = new Bin("rowkey", buffer.get(key).getId());
-                // Post content
-                Bin bcontent = new Bin("content", buffer.get(key).getContent());
-                // Post language
-                Bin blanguage = new Bin("language", buffer.get(key).getLanguage());
-                // External buffer of posts for the next stage
-                keyToHash = new Key(
-                        "polypus_classifier",
-                        "input_buffer",
-                        buffer.get(key).getId()
-                );
-
-                try {
-                    this.aerospikeClient.put(
-                            wpolicyOutputBuffer,
-                            keyToHash,
-                            browkey,
-                            bcontent,
-                            blanguage
-                    );
-                } catch (AerospikeException ex) {
-                    logger.log(Level.SEVERE, "input_buffer put", ex);
-                    this.reconnectAerospike();
-                }
+    /**
+     * Every post is a single put.
+     */
+    @Override
+    public long getLostPosts() {
+        return this.hbaseLost.sum();
+    }
 
-                // Keep the post for batch insert in HBase
-                Put put = new Put(Bytes.toBytes(buffer.get(key).getId()));
-
-                put.addColumn(Bytes.toBytes(this.hbasePrimaryFamily),
-                        Bytes.toBytes("content"),
-                        Bytes.toBytes(buffer.get(key).getContent()));
-                put.addColumn(Bytes.toBytes(this.hbasePrimaryFamily),
-                        Bytes.toBytes("language"),
-                        Bytes.toBytes(buffer.get(key).getLanguage()));
-                put.addColumn(Bytes.toBytes(this.hbasePrimaryFamily),
-                        Bytes.toBytes("post_timestamp"),
-                        Bytes.toBytes(buffer.get(key).getPublicationTimestamp()));
-                put.addColumn(Bytes.toBytes(this.hbaseSecondaryFamily),
-                        Bytes.toBytes("post_id"),
-                        Bytes.toBytes(buffer.get(key).getPostId()));
-                put.addColumn(Bytes.toBytes(this.hbaseSecondaryFamily),
-                        Bytes.toBytes("author_name"),
-                        Bytes.toBytes(buffer.get(key).getAuthorName()));
-                put.addColumn(Bytes.toBytes(this.hbasePrimaryFamily),
-                        Bytes.toBytes("author_nick"),
-                        Bytes.toBytes(buffer.get(key).getAuthorNickname()));
-                put.addColumn(Bytes.toBytes(this.hbaseSecondaryFamily),
-                        Bytes.toBytes("author_id"),
-                        Bytes.toBytes(buffer.get(key).getAuthorId()));
-                puts.add(put);
+    /**
+     * @return the current session, entered, or null if disconnected
+     */
+    private HBaseSession enterHbase() {
+        while (true) {
+            HBaseSession session = this.hbase.get();
+            if (session == null || session.enter()) {
+                return session;
             }
-        });
-
-        // Writing stored puts to HBase
-        try {
-            this.hbaseTable.put(puts);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
-            this.reconnectHbase();
         }
     }
 }
@@ -20,6 +20,7 @@
 package com.brunneis.polypus.polypus4t.dao;
 
 import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
 import com.brunneis.sg.exceptions.BadItemException;
 import com.brunneis.sg.exceptions.DuplicateNameException;
 import com.brunneis.sg.exceptions.FileParsingException;
@@ -28,11 +29,15 @@ import com.brunneis.sg.vo.Document;
 import com.brunneis.sg.vo.SimpleGroup;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Concurrent dumpBuffer() calls format their posts in parallel, only the
+ * update of the output file is done by one of them at a time.
  *
  * @author brunneis
  */
@@ -40,8 +45,14 @@ public class DigitalPostSingletonSimpleGroupsDAO implements DigitalPostDAO {
 
     private static final DigitalPostSingletonSimpleGroupsDAO INSTANCE = new DigitalPostSingletonSimpleGroupsDAO();
 
+    // Held while the output file is read and rewritten
+    private final Object fileLock;
+    private final LongAdder lost;
+
     private DigitalPostSingletonSimpleGroupsDAO() {
         super();
+        this.fileLock = new Object();
+        this.lost = new LongAdder();
     }
 
     public static DigitalPostDAO getInstance() {
@@ -49,8 +60,32 @@ public class DigitalPostSingletonSimpleGroupsDAO implements DigitalPostDAO {
     }
 
     @Override
-    public synchronized void dumpBuffer(HashMap<String, DigitalPost> buffer) {
+    public void dumpBuffer(DigitalPostBuffer buffer) {
+        List<String[]> items = new ArrayList<>(buffer.size());
+        for (DigitalPost post : buffer) {
+            items.add(new String[]{
+                String.valueOf(post.getPostId()),
+                post.getContent().replaceAll("[\\n\\r]+", "") + "|"
+                + post.getLanguage() + "|"
+                + post.getPublicationTimestamp() + "|"
+                + post.getPostId() + "|"
+                + post.getAuthorName() + "|"
+                + post.getAuthorNickname() + "|"
+                + post.getAuthorId() + "|"
+            });
+        }
+
+        synchronized (this.fileLock) {
+            this.write(items);
+        }
+    }
 
+    @Override
+    public long getLostPosts() {
+        return this.lost.sum();
+    }
+
+    private void write(List<String[]> items) {
         Document document;
         try {
             document = FileHandler.loadFile("twitter_crawler_output.sg");
@@ -58,6 +93,7 @@ public class DigitalPostSingletonSimpleGroupsDAO implements DigitalPostDAO {
             document = new Document();
         } catch (IOException | FileParsingException ex) {
             Logger.getLogger(DigitalPostSingletonSimpleGroupsDAO.class.getName()).log(Level.SEVERE, null, ex);
+            this.lost.add(items.size());
             return;
         }
 
@@ -70,29 +106,24 @@ public class DigitalPostSingletonSimpleGroupsDAO implements DigitalPostDAO {
                 document.addAttribute("TITLE", "twitter_crawler_output");
             } catch (BadItemException ex) {
                 Logger.getLogger(DigitalPostSingletonSimpleGroupsDAO.class.getName()).log(Level.SEVERE, null, ex);
+                this.lost.add(items.size());
                 return;
             }
             try {
                 document.addGroup(group);
             } catch (DuplicateNameException ex) {
                 Logger.getLogger(DigitalPostSingletonSimpleGroupsDAO.class.getName()).log(Level.SEVERE, null, ex);
+                this.lost.add(items.size());
                 return;
             }
         }
 
-        for (String id : buffer.keySet()) {
+        for (String[] item : items) {
             try {
-                group.addItem(id,
-                        buffer.get(id).getContent().replaceAll("[\\n\\r]+", "") + "|"
-                        + buffer.get(id).getLanguage() + "|"
-                        + buffer.get(id).getPublicationTimestamp() + "|"
-                        + buffer.get(id).getPostId() + "|"
-                        + buffer.get(id).getAuthorName() + "|"
-                        + buffer.get(id).getAuthorNickname() + "|"
-                        + buffer.get(id).getAuthorId() + "|"
-                );
+                group.addItem(item[0], item[1]);
             } catch (BadItemException ex) {
                 Logger.getLogger(DigitalPostSingletonSimpleGroupsDAO.class.getName()).log(Level.SEVERE, null, ex);
+                this.lost.increment();
             }
         }
 
@@ -100,10 +131,9 @@ public class DigitalPostSingletonSimpleGroupsDAO implements DigitalPostDAO {
             FileHandler.writeFile(document);
         } catch (IOException ex) {
             Logger.getLogger(DigitalPostSingletonSimpleGroupsDAO.class.getName()).log(Level.SEVERE, null, ex);
+            this.lost.add(items.size());
             return;
         }
-
-        buffer.clear();
     }
 
     @Override
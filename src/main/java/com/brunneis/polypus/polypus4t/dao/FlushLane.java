@@ -0,0 +1,152 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.async.MaxCommandAction;
+import com.brunneis.polypus.polypus4t.conf.AerospikeConf;
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A flush lane of the HBase + Aerospike DAO, with its own Aerospike client
+ * and post index. Every flushing thread sticks to a lane, so the flushes of
+ * different lanes share no client, and an Aerospike error only reconnects
+ * the client of its lane while the others keep on writing.
+ *
+ * @author brunneis
+ */
+final class FlushLane {
+
+    // Min time between two reconnections of a lane (ms)
+    private static final long RECONNECT_INTERVAL = 1000;
+
+    private static final AtomicInteger TAKEN = new AtomicInteger();
+    private static final ThreadLocal<Integer> THREAD_LANE
+            = ThreadLocal.withInitial(TAKEN::getAndIncrement);
+
+    private final int id;
+    private final boolean async;
+    private final AtomicReference<AerospikeClient> client;
+    private final AtomicBoolean reconnecting;
+    private final AtomicLong lastReconnect;
+    private final AerospikePostIndex index;
+
+    private Logger logger;
+
+    FlushLane(int id) {
+        logger = Logger.getLogger(FlushLane.class.getName());
+        logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        AerospikeConf conf = (AerospikeConf) Conf.DB_BUFFER.value();
+        this.id = id;
+        this.async = conf.async.value() == 1;
+        this.client = new AtomicReference<>();
+        this.reconnecting = new AtomicBoolean();
+        this.lastReconnect = new AtomicLong();
+
+        if (this.async) {
+            this.index = new AsyncAerospikePostIndex(
+                    conf.batch.value(),
+                    conf.maxInflight.value(),
+                    () -> (AsyncClient) this.client.get(),
+                    this::reconnect
+            );
+        } else {
+            this.index = new AerospikePostIndex(
+                    conf.batch.value(),
+                    this.client::get,
+                    this::reconnect
+            );
+        }
+    }
+
+    /**
+     * Lane of the calling thread, the same one on every call.
+     */
+    static int forCurrentThread(int lanes) {
+        return Math.floorMod(THREAD_LANE.get(), lanes);
+    }
+
+    AerospikePostIndex getIndex() {
+        return this.index;
+    }
+
+    private AerospikeClient newClient() {
+        String host = ((AerospikeConf) Conf.DB_BUFFER.value()).host.value();
+        Integer port = ((AerospikeConf) Conf.DB_BUFFER.value()).port.value();
+        // Single Seed Node
+        if (this.async) {
+            AsyncClientPolicy policy = new AsyncClientPolicy();
+            // The index already bounds the commands in flight
+            policy.asyncMaxCommands
+                    = ((AerospikeConf) Conf.DB_BUFFER.value()).maxInflight.value();
+            policy.asyncMaxCommandAction = MaxCommandAction.BLOCK;
+            return new AsyncClient(policy, host, port);
+        }
+        return new AerospikeClient(host, port);
+    }
+
+    void connect() {
+        this.close(this.client.getAndSet(this.newClient()));
+    }
+
+    void disconnect() {
+        this.close(this.client.getAndSet(null));
+    }
+
+    private void close(AerospikeClient client) {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    /**
+     * Replaces the client after an error. Only one thread reconnects, the
+     * others of the lane go on with the current client instead of waiting,
+     * and the errors of the commands already sent with the old client don't
+     * trigger another reconnection right away.
+     */
+    void reconnect() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastReconnect.get() < RECONNECT_INTERVAL
+                || !this.reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.lastReconnect.set(now);
+            logger.log(Level.WARNING, "lane {0} | reconnecting to Aerospike", this.id);
+            this.close(this.client.getAndSet(this.newClient()));
+        } catch (AerospikeException ex) {
+            logger.log(Level.SEVERE, "lane " + this.id + " | couldn't reconnect", ex);
+        } finally {
+            this.reconnecting.set(false);
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the miner buffers to the DAO in the background. Miners enqueue their
+ * full buffers and keep crawling while flusher threads drain the bounded
+ * queue. When the queue is full, miners either wait (BLOCK) or the buffer is
+ * discarded (DROP). A written buffer is recycled and given back to the miner
+ * that filled it.
+ *
+ * With no flusher threads, or once closed, buffers are written inline. The
+ * flusher threads are owned by the service and stopped on close.
+ *
+ * @author brunneis
+ */
+public class FlushService {
+
+    private static final long REPORT_INTERVAL = 60_000_000_000L;
+
+    private static FlushService instance = null;
+
+    // Queue terminator
+    private static final Batch END_OF_BATCHES = new Batch(null, null);
+
+    private final DigitalPostDAO dao;
+    private final ArrayBlockingQueue<Batch> queue;
+    private final int policy;
+    private final ExecutorService executor;
+    private final ArrayList<Future<?>> flushers;
+    // Enqueuing miners hold the read lock, closing takes the write lock
+    private final ReentrantReadWriteLock closing;
+    private boolean closed;
+
+    // Metrics
+    private final LongAdder batches;
+    private final LongAdder posts;
+    private final LongAdder droppedBatches;
+    private final LongAdder droppedPosts;
+    private final LongAdder waitNanos;
+    private final LongAdder flushNanos;
+    private final AtomicLong maxFlushNanos;
+    private final AtomicInteger maxDepth;
+    private final AtomicLong nextReport;
+
+    private final Logger logger;
+
+    /**
+     * @param dao where the buffers are written
+     * @param threads flusher threads, 0 to write inline
+     * @param capacity max number of buffers waiting to be written
+     * @param policy Conf.FLUSH_BLOCK or Conf.FLUSH_DROP
+     */
+    public FlushService(DigitalPostDAO dao, int threads, int capacity, int policy) {
+        this.logger = Logger.getLogger(FlushService.class.getName());
+        this.logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.dao = dao;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.policy = policy;
+        this.closing = new ReentrantReadWriteLock();
+        this.closed = false;
+
+        this.batches = new LongAdder();
+        this.posts = new LongAdder();
+        this.droppedBatches = new LongAdder();
+        this.droppedPosts = new LongAdder();
+        this.waitNanos = new LongAdder();
+        this.flushNanos = new LongAdder();
+        this.maxFlushNanos = new AtomicLong();
+        this.maxDepth = new AtomicInteger();
+        this.nextReport = new AtomicLong(System.nanoTime() + REPORT_INTERVAL);
+
+        this.flushers = new ArrayList<>();
+        if (threads > 0) {
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> new Thread(
+                    runnable, counter.incrementAndGet() + "_FLUSH"
+            ));
+            for (int i = 0; i < threads; i++) {
+                this.flushers.add(this.executor.submit(this::drain));
+            }
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public synchronized static FlushService getInstance() {
+        if (instance == null) {
+            instance = new FlushService(
+                    DigitalPostSingletonFactoryDAO.getDigitalPostDAOinstance(),
+                    Conf.FLUSH_THREADS.value(),
+                    Conf.FLUSH_QUEUE.value(),
+                    Conf.FLUSH_POLICY.value()
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Takes ownership of a sealed buffer. Once written (or dropped) it is
+     * recycled and added to spares.
+     */
+    public void flush(DigitalPostBuffer buffer, Queue<DigitalPostBuffer> spares) {
+        Batch batch = new Batch(buffer, spares);
+
+        this.closing.readLock().lock();
+        try {
+            if (!this.closed && !this.flushers.isEmpty()) {
+                if (this.enqueue(batch)) {
+                    this.maxDepth.accumulateAndGet(this.queue.size(), Math::max);
+                }
+                return;
+            }
+        } finally {
+            this.closing.readLock().unlock();
+        }
+
+        this.write(batch);
+    }
+
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Writes every pending buffer and stops the flusher threads.
+     */
+    public void close() {
+        this.closing.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.closing.writeLock().unlock();
+        }
+
+        try {
+            for (int i = 0; i < this.flushers.size(); i++) {
+                this.queue.put(END_OF_BATCHES);
+            }
+            for (Future<?> flusher : this.flushers) {
+                flusher.get();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+
+        // Left behind by flushers that didn't finish normally
+        Batch batch;
+        while ((batch = this.queue.poll()) != null) {
+            if (batch != END_OF_BATCHES) {
+                this.write(batch);
+            }
+        }
+        this.log();
+    }
+
+    public void log() {
+        long written = this.batches.sum();
+        logger.log(Level.INFO,
+                "flush | queued: {0}/{1} (max {2}) | batches: {3} | posts: {4}"
+                + " | dropped: {5} batches, {6} posts | lost: {7} posts"
+                + " | mean wait: {8} ms | mean flush: {9} ms (max {10})",
+                new Object[]{this.queue.size(),
+                    this.queue.size() + this.queue.remainingCapacity(),
+                    this.maxDepth.get(),
+                    written,
+                    this.posts.sum(),
+                    this.droppedBatches.sum(),
+                    this.droppedPosts.sum(),
+                    this.dao.getLostPosts(),
+                    String.format("%.1f", (written == 0) ? 0.0
+                            : this.waitNanos.sum() / 1e6 / written),
+                    String.format("%.1f", (written == 0) ? 0.0
+                            : this.flushNanos.sum() / 1e6 / written),
+                    String.format("%.1f", this.maxFlushNanos.get() / 1e6)}
+        );
+    }
+
+    /**
+     * @return false if the buffer was dropped
+     */
+    private boolean enqueue(Batch batch) {
+        if (this.policy == Conf.FLUSH_DROP) {
+            if (this.queue.offer(batch)) {
+                return true;
+            }
+            this.droppedBatches.increment();
+            this.droppedPosts.add(batch.buffer.size());
+            logger.log(Level.WARNING,
+                    "flush queue full, {0} posts dropped", batch.buffer.size());
+            batch.release();
+            return false;
+        }
+
+        try {
+            // Backpressure, the miner waits for a free slot
+            this.queue.put(batch);
+            return true;
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+            this.write(batch);
+            return false;
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Batch batch = this.queue.take();
+                if (batch == END_OF_BATCHES) {
+                    return;
+                }
+                this.write(batch);
+            }
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void write(Batch batch) {
+        long start = System.nanoTime();
+        try {
+            this.dao.dumpBuffer(batch.buffer);
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "error writing a buffer", ex);
+        }
+        long end = System.nanoTime();
+
+        this.batches.increment();
+        this.posts.add(batch.buffer.size());
+        this.waitNanos.add(start - batch.enqueuedAt);
+        this.flushNanos.add(end - start);
+        this.maxFlushNanos.accumulateAndGet(end - start, Math::max);
+        batch.release();
+
+        // The first thread past the interval logs the report
+        long next = this.nextReport.get();
+        if (end >= next && this.nextReport.compareAndSet(next, end + REPORT_INTERVAL)) {
+            this.log();
+        }
+    }
+
+    private static class Batch {
+
+        private final DigitalPostBuffer buffer;
+        private final Queue<DigitalPostBuffer> spares;
+        private final long enqueuedAt;
+
+        private Batch(DigitalPostBuffer buffer, Queue<DigitalPostBuffer> spares) {
+            this.buffer = buffer;
+            this.spares = spares;
+            this.enqueuedAt = System.nanoTime();
+        }
+
+        private void release() {
+            // Back to the miner that filled it
+            this.buffer.recycle();
+            this.spares.add(this.buffer);
+        }
+
+    }
+
+}
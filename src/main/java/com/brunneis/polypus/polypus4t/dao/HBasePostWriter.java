@@ -0,0 +1,217 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+
+/**
+ * Writes the posts to HBase through a BufferedMutator shared by every
+ * flushing thread. Puts are sent in the background once writeBufferSize
+ * bytes are buffered, and at least every flushMs.
+ *
+ * The mutations that fail after the client retries are handed to the
+ * exception listener, which schedules them to be mutated again after a
+ * growing delay, on the timer thread, so the flushing threads never wait for
+ * a retry. Puts given up on are counted as lost.
+ *
+ * @author brunneis
+ */
+public class HBasePostWriter implements Closeable {
+
+    // Times a failed put is mutated again
+    private static final int ATTEMPTS = 3;
+    // Delay before the first retry, doubled on every attempt (ms)
+    private static final long RETRY_DELAY = 1000;
+
+    private final BufferedMutator mutator;
+    private final ScheduledExecutorService timer;
+    private final LongAdder lost;
+
+    private Logger logger;
+
+    /**
+     * @param writeBufferSize bytes buffered before sending the puts
+     * @param flushMs max time a put stays in the buffer (0 = no limit)
+     * @param lost counts the puts given up on
+     */
+    public HBasePostWriter(
+            Connection connection,
+            TableName tableName,
+            long writeBufferSize,
+            long flushMs,
+            LongAdder lost
+    ) throws IOException {
+        logger = Logger.getLogger(HBasePostWriter.class.getName());
+        logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.lost = lost;
+        this.mutator = connection.getBufferedMutator(
+                new BufferedMutatorParams(tableName)
+                        .writeBufferSize(writeBufferSize)
+                        .listener(this::onException)
+        );
+
+        // Periodic flushes and retries
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HBASE_FLUSH_TIMER");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (flushMs > 0) {
+            this.timer.scheduleWithFixedDelay(
+                    this::flushQuietly,
+                    flushMs,
+                    flushMs,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Buffers the puts, it only blocks while the write buffer is full.
+     */
+    public void write(List<Put> puts) throws IOException {
+        this.mutator.mutate(puts);
+    }
+
+    public void flush() throws IOException {
+        this.mutator.flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            this.mutator.flush();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "periodic flush", ex);
+        }
+    }
+
+    /**
+     * Called by the thread whose mutate() or flush() found the failed
+     * mutations, it only schedules them.
+     */
+    private void onException(
+            RetriesExhaustedWithDetailsException ex,
+            BufferedMutator mutator
+    ) {
+        int failed = ex.getNumExceptions();
+        // Failed puts by attempt
+        List<List<Put>> retries = new ArrayList<>(ATTEMPTS);
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            retries.add(new ArrayList<>());
+        }
+        int given = 0;
+        for (int i = 0; i < failed; i++) {
+            Row row = ex.getRow(i);
+            int attempt = (row instanceof RetriedPut)
+                    ? ((RetriedPut) row).attempt : 0;
+            if (!(row instanceof Put) || attempt >= ATTEMPTS) {
+                given++;
+                continue;
+            }
+            retries.get(attempt).add(new RetriedPut((Put) row, attempt + 1));
+        }
+
+        if (given > 0) {
+            this.lost.add(given);
+            logger.log(Level.SEVERE, given + " HBase puts lost", ex.getCause(0));
+        }
+        if (failed > given) {
+            logger.log(Level.WARNING, "{0} HBase puts failed, retrying them",
+                    failed - given);
+        }
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            if (!retries.get(attempt).isEmpty()) {
+                this.schedule(retries.get(attempt), RETRY_DELAY << attempt);
+            }
+        }
+    }
+
+    private void schedule(List<Put> puts, long delay) {
+        try {
+            this.timer.schedule(() -> {
+                try {
+                    this.mutator.mutate(puts);
+                    this.mutator.flush();
+                } catch (IOException ex) {
+                    // Closed meanwhile
+                    this.lost.add(puts.size());
+                    logger.log(Level.SEVERE, puts.size() + " HBase puts lost", ex);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Found by the last flush of close()
+            this.lost.add(puts.size());
+            logger.log(Level.SEVERE, "{0} HBase puts lost on close", puts.size());
+        }
+    }
+
+    /**
+     * Sends the buffered puts and releases the mutator, the connection is
+     * left open. Scheduled retries are run first.
+     */
+    @Override
+    public void close() throws IOException {
+        this.timer.shutdown();
+        try {
+            if (!this.timer.awaitTermination(
+                    RETRY_DELAY << ATTEMPTS, TimeUnit.MILLISECONDS)) {
+                logger.log(Level.WARNING,
+                        "closing the HBase writer with retries pending");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.mutator.close();
+    }
+
+    /**
+     * A put mutated again, with the number of its retries.
+     */
+    private static final class RetriedPut extends Put {
+
+        private final int attempt;
+
+        private RetriedPut(Put put, int attempt) {
+            super(put);
+            this.attempt = attempt;
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Turns a post into the records written on a flush: the HBase put of its row,
+ * in the column or the compact format, and the record of the Aerospike
+ * output buffer read by the classifier.
+ *
+ * @author brunneis
+ */
+public final class PostEncoder {
+
+    // Column qualifiers, encoded once
+    private static final byte[] CONTENT = Bytes.toBytes("content");
+    private static final byte[] LANGUAGE = Bytes.toBytes("language");
+    private static final byte[] POST_TIMESTAMP = Bytes.toBytes("post_timestamp");
+    private static final byte[] POST_ID = Bytes.toBytes("post_id");
+    private static final byte[] AUTHOR_NAME = Bytes.toBytes("author_name");
+    private static final byte[] AUTHOR_NICK = Bytes.toBytes("author_nick");
+    private static final byte[] AUTHOR_ID = Bytes.toBytes("author_id");
+
+    private final byte[] primaryFamily;
+    private final byte[] secondaryFamily;
+    private final boolean compactRows;
+
+    public PostEncoder(String primaryFamily, String secondaryFamily,
+            boolean compactRows) {
+        this.primaryFamily = Bytes.toBytes(primaryFamily);
+        this.secondaryFamily = Bytes.toBytes(secondaryFamily);
+        this.compactRows = compactRows;
+    }
+
+    /**
+     * The post must have its row key already assigned.
+     */
+    public Put toPut(DigitalPost post) {
+        Put put = new Put(post.getRowKey());
+
+        if (this.compactRows) {
+            put.addColumn(this.primaryFamily,
+                    CompactPostCodec.PRIMARY,
+                    CompactPostCodec.encodePrimary(post));
+            put.addColumn(this.secondaryFamily,
+                    CompactPostCodec.SECONDARY,
+                    CompactPostCodec.encodeSecondary(post));
+            return put;
+        }
+
+        put.addColumn(this.primaryFamily,
+                CONTENT,
+                post.getContentBytes());
+        put.addColumn(this.primaryFamily,
+                LANGUAGE,
+                post.getLanguageBytes());
+        put.addColumn(this.primaryFamily,
+                POST_TIMESTAMP,
+                Bytes.toBytes(post.getPublicationTimestamp()));
+        // Ids are stored as decimal text
+        put.addColumn(this.secondaryFamily,
+                POST_ID,
+                toDecimalBytes(post.getPostId()));
+        put.addColumn(this.secondaryFamily,
+                AUTHOR_NAME,
+                post.getAuthorNameBytes());
+        put.addColumn(this.primaryFamily,
+                AUTHOR_NICK,
+                post.getAuthorNicknameBytes());
+        put.addColumn(this.secondaryFamily,
+                AUTHOR_ID,
+                toDecimalBytes(post.getAuthorId()));
+        return put;
+    }
+
+    public static Key outputKey(DigitalPost post) {
+        // External buffer of posts for the next stage
+        return new Key("polypus_classifier", "input_buffer", post.getId());
+    }
+
+    public static Bin[] outputBins(DigitalPost post) {
+        return new Bin[]{
+            // Polypus identifier
+            new Bin("rowkey", post.getId()),
+            // Post content
+            new Bin("content", post.getContent()),
+            // Post language
+            new Bin("language", post.getLanguage())
+        };
+    }
+
+    /**
+     * Same bytes as Bytes.toBytes(String.valueOf(value)) for non-negative
+     * values, without the String.
+     */
+    private static byte[] toDecimalBytes(long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        byte[] bytes = new byte[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Row key generator used by a single thread at a time, so no lock is taken
+ * while generating. Keys have
+ * the layout of RowKeyHelper (salt + reversed timestamp + source + hostId +
+ * 2-digit suffix) and are written as bytes into a template where only the
+ * changing digits are updated.
+ *
+ * There is a generator per lane of the suffixes, LANES of them, so they
+ * never produce the same key. A thread checks one out with acquire() for a
+ * batch of keys and gives it back with release(); when every generator is
+ * taken, acquire() waits for one. Within a millisecond each salt and suffix
+ * pair is used once; when a generator runs out of them it moves on to the
+ * next millisecond before the clock does.
+ *
+ * @author brunneis
+ */
+public final class RowKeyGenerator {
+
+    public static final int KEY_LENGTH = 2 + 19 + 5 + 4 + 2;
+
+    private static final int SALT_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 2;
+    private static final int SOURCE_OFFSET = 21;
+    private static final int HOST_OFFSET = 26;
+    private static final int SUFFIX_OFFSET = 30;
+
+    private static final int BUCKETS = 32;
+    private static final int SUFFIXES = 90;
+    private static final int LANES = 8;
+
+    private static final ArrayBlockingQueue<RowKeyGenerator> POOL
+            = new ArrayBlockingQueue<>(LANES);
+
+    static {
+        for (int lane = 0; lane < LANES; lane++) {
+            POOL.add(new RowKeyGenerator(lane));
+        }
+    }
+
+    private final byte[] key;
+    private final int[] suffixes;
+    private final int capacity;
+    private int salt;
+    // Millisecond of the last key, never behind the clock
+    private long millis;
+    // Keys generated within it
+    private int sequence;
+
+    private RowKeyGenerator(int lane) {
+        // Suffixes i + 10 with i % LANES == lane, shifted by the random
+        // offset of the process
+        this.suffixes = new int[(SUFFIXES - lane + LANES - 1) / LANES];
+        for (int j = 0; j < this.suffixes.length; j++) {
+            int i = lane + j * LANES;
+            this.suffixes[j] = (RowKeyHelper.getSuffixOffset() + i) % SUFFIXES + 10;
+        }
+        this.capacity = BUCKETS * this.suffixes.length;
+
+        this.key = new byte[KEY_LENGTH];
+        byte[] host = RowKeyHelper.getHostId().getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(host, 0, this.key, HOST_OFFSET, 4);
+        this.millis = -1;
+    }
+
+    /**
+     * Checks a generator out of the pool, waiting for one if needed. It must
+     * be given back with release() and not be used afterwards.
+     */
+    public static RowKeyGenerator acquire() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return POOL.take();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void release() {
+        POOL.add(this);
+    }
+
+    /**
+     * @param source the 5-byte source code
+     * @return a new key, ASCII-encoded
+     */
+    public byte[] next(byte[] source) {
+        if (source.length != 5) {
+            throw new IllegalArgumentException("La longitud de la fuente debe ser de 5 caracteres.");
+        }
+
+        long now = System.currentTimeMillis();
+        if (now > this.millis) {
+            this.setMillis(now);
+        } else if (this.sequence == this.capacity) {
+            // Every pair used in this millisecond
+            this.setMillis(this.millis + 1);
+        }
+
+        // The salt changes on every key, the suffix every BUCKETS keys
+        int suffix = this.suffixes[this.sequence / BUCKETS];
+        this.sequence++;
+        writeDigits(this.key, SALT_OFFSET, 2, this.nextSalt());
+        System.arraycopy(source, 0, this.key, SOURCE_OFFSET, 5);
+        writeDigits(this.key, SUFFIX_OFFSET, 2, suffix);
+        return this.key.clone();
+    }
+
+    /**
+     * @return the salt bucket of the next key, round-robin
+     */
+    public int nextSalt() {
+        int current = this.salt;
+        this.salt = (current + 1) % BUCKETS;
+        return current;
+    }
+
+    /**
+     * @return the source code written in a key
+     */
+    static String getSourceCode(byte[] key) {
+        return new String(key, SOURCE_OFFSET, 5, StandardCharsets.US_ASCII);
+    }
+
+    private void setMillis(long millis) {
+        this.millis = millis;
+        this.sequence = 0;
+        // Inverted timestamp, zero-padded
+        writeDigits(this.key, TIMESTAMP_OFFSET, 19, Long.MAX_VALUE - millis);
+    }
+
+    private static void writeDigits(byte[] target, int offset, int length, long value) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+}
@@ -19,12 +19,11 @@
  */
 package com.brunneis.polypus.polypus4t.dao;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
-import java.util.Calendar;
 import java.util.Random;
-import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -35,17 +34,14 @@ import org.apache.hadoop.hbase.util.Bytes;
  */
 public class RowKeyHelper {
 
-    private static final Long MAX_LONG = 9223372036854775807L;
-
     private static final String[] PREFIXES;
     private static final int BUCKETS_NUMBER = 32;
     private static final int SALT_LENGTH = Integer.toString(BUCKETS_NUMBER).length();
 
-    private static String previousKey = "";
-    private static int counter = 0;
-
     private static Random random;
     private static String hostId = "XXXX";
+    // First suffix of the keys (PID as seed)
+    private static final int SUFFIX_OFFSET;
 
     static {
         PREFIXES = new String[BUCKETS_NUMBER];
@@ -64,6 +60,7 @@ public class RowKeyHelper {
         // PID
         String[] pidHost = getPidHost();
         random = new Random(Long.parseLong(pidHost[0]));
+        SUFFIX_OFFSET = random.nextInt(90);
 
         // Hostname sum
         try {
@@ -76,33 +73,37 @@ public class RowKeyHelper {
         }
     }
 
-    public synchronized static final String generateId(String source) {
-
-        // Inverted timestamp
-        String reverseTimestamp = (MAX_LONG - Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTimeInMillis()) + "";
-
-        // Zero padding
-        Integer padding = MAX_LONG.toString().length() - reverseTimestamp.length();
-        for (int i = 0; i < padding; i++) {
-            reverseTimestamp = 0 + reverseTimestamp;
+    /**
+     * Keys are made by a generator of the pool.
+     */
+    public static final String generateId(String source) {
+        byte[] code = toSource(source);
+        RowKeyGenerator generator = RowKeyGenerator.acquire();
+        try {
+            return toString(generator.next(code));
+        } finally {
+            generator.release();
         }
+    }
 
+    public static String toString(byte[] key) {
+        return new String(key, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] toSource(String source) {
         // Source size check
         if (source.length() != 5) {
             throw new IllegalArgumentException("La longitud de la fuente debe ser de 5 caracteres.");
         }
+        return source.getBytes(StandardCharsets.US_ASCII);
+    }
 
-        String originalKey;
-        do {
-            // 4-digit random number (PID as seed)
-            Integer randomInt = RowKeyHelper.random.nextInt(90) + 10;
-            // Identifier build
-            originalKey = reverseTimestamp + source + hostId + randomInt;
-        } while (originalKey.equals(previousKey));
-
-        previousKey = originalKey;
+    static String getHostId() {
+        return hostId;
+    }
 
-        return RowKeyHelper.getSaltedKey(originalKey);
+    static int getSuffixOffset() {
+        return SUFFIX_OFFSET;
     }
 
     public static String[] getPidHost() {
@@ -126,10 +127,13 @@ public class RowKeyHelper {
         return saltedKey.substring(SALT_LENGTH);
     }
 
-    public synchronized static String getSaltedKey(String originalKey) {
-        String saltedKey = PREFIXES[counter] + originalKey;
-        counter = (counter + 1) % BUCKETS_NUMBER;
-        return saltedKey;
+    public static String getSaltedKey(String originalKey) {
+        RowKeyGenerator generator = RowKeyGenerator.acquire();
+        try {
+            return PREFIXES[generator.nextSalt()] + originalKey;
+        } finally {
+            generator.release();
+        }
     }
 
 }
@@ -0,0 +1,209 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.dao;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded set of the post ids recently buffered by any miner, consulted
+ * before buffering so overlapping terms don't send the same post to the DAO
+ * again and again. Ids are spread over independently locked segments, each
+ * one an open-addressing table of primitive longs that forgets its oldest
+ * ids first once full.
+ *
+ * @author brunneis
+ */
+public class SeenPostsCache {
+
+    private static final int SEGMENTS = 64;
+    private static final int SEGMENT_SHIFT = 64 - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final long REPORT_INTERVAL = 60_000_000_000L;
+
+    private static SeenPostsCache instance = null;
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final AtomicLong nextReport;
+
+    private final Logger logger;
+
+    /**
+     * @param capacity max number of ids, 0 to disable the cache
+     */
+    public SeenPostsCache(int capacity) {
+        this.logger = Logger.getLogger(SeenPostsCache.class.getName());
+        this.logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.capacity = Math.max(0, capacity);
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = (this.capacity + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new Segment(segmentCapacity);
+        }
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.nextReport = new AtomicLong(System.nanoTime() + REPORT_INTERVAL);
+    }
+
+    public synchronized static SeenPostsCache getInstance() {
+        if (instance == null) {
+            instance = new SeenPostsCache(Conf.SEEN_CACHE.value());
+        }
+        return instance;
+    }
+
+    /**
+     * Marks a post id as seen.
+     *
+     * @return true if the id wasn't seen recently and the post has to be
+     * buffered
+     */
+    public boolean add(long postId) {
+        if (this.capacity == 0 || postId <= 0) {
+            return true;
+        }
+
+        long hash = mix(postId);
+        if (!this.segments[(int) (hash >>> SEGMENT_SHIFT)].add(postId, hash)) {
+            this.hits.increment();
+            return false;
+        }
+        this.misses.increment();
+
+        // The first thread past the interval logs the report
+        long now = System.nanoTime();
+        long next = this.nextReport.get();
+        if (now >= next && this.nextReport.compareAndSet(next, now + REPORT_INTERVAL)) {
+            this.log();
+        }
+        return true;
+    }
+
+    public double getHitRate() {
+        long h = this.hits.sum();
+        long total = h + this.misses.sum();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    public void log() {
+        if (this.capacity == 0) {
+            return;
+        }
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        this.logger.log(Level.INFO,
+                "seen cache | ids: {0}/{1} | hits: {2} | misses: {3} | hit rate: {4}%",
+                new Object[]{size,
+                    this.capacity,
+                    this.hits.sum(),
+                    this.misses.sum(),
+                    String.format("%.1f", 100 * this.getHitRate())}
+        );
+    }
+
+    private static long mix(long key) {
+        // Murmur3 finalizer, tweet ids have low-entropy low bits
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment {
+
+        // 0 marks an empty slot, linear probing
+        private final long[] table;
+        private final int mask;
+        // Ids in insertion order, the oldest one is evicted first
+        private final long[] order;
+        private int next;
+        private int size;
+
+        private Segment(int capacity) {
+            int slots = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.table = new long[slots];
+            this.mask = slots - 1;
+            this.order = new long[Math.max(1, capacity)];
+        }
+
+        private synchronized int size() {
+            return this.size;
+        }
+
+        private synchronized boolean add(long key, long hash) {
+            if (this.find(key, hash) >= 0) {
+                return false;
+            }
+
+            if (this.size == this.order.length) {
+                this.remove(this.order[this.next]);
+            } else {
+                this.size++;
+            }
+            this.order[this.next] = key;
+            this.next = (this.next + 1) % this.order.length;
+
+            int slot = (int) hash & this.mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.table[slot] = key;
+            return true;
+        }
+
+        private int find(long key, long hash) {
+            int slot = (int) hash & this.mask;
+            while (this.table[slot] != 0) {
+                if (this.table[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return -1;
+        }
+
+        private void remove(long key) {
+            int gap = this.find(key, mix(key));
+            // Following entries are shifted back, no tombstones are left
+            int slot = (gap + 1) & this.mask;
+            while (this.table[slot] != 0) {
+                int home = (int) mix(this.table[slot]) & this.mask;
+                if (((slot - home) & this.mask) >= ((slot - gap) & this.mask)) {
+                    this.table[gap] = this.table[slot];
+                    gap = slot;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            this.table[gap] = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Raw HTTP response returned by a Fetcher. The body must be consumed (or the
+ * response closed) so the underlying connection can be reused.
+ *
+ * @author brunneis
+ */
+public class FetchResponse implements Closeable {
+
+    private final int statusCode;
+    private final Charset charset;
+    private final InputStream body;
+    private final Closeable resource;
+    private final long retryAfter;
+
+    public FetchResponse(
+            int statusCode,
+            Charset charset,
+            InputStream body,
+            Closeable resource
+    ) {
+        this(statusCode, charset, body, resource, -1);
+    }
+
+    public FetchResponse(
+            int statusCode,
+            Charset charset,
+            InputStream body,
+            Closeable resource,
+            long retryAfter
+    ) {
+        this.statusCode = statusCode;
+        this.charset = (charset == null) ? StandardCharsets.UTF_8 : charset;
+        this.body = body;
+        this.resource = resource;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Parses a Retry-After header value, either delay-seconds or an HTTP
+     * date.
+     *
+     * @return the delay in ms, or -1 if the value is missing or malformed
+     */
+    public static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ex) {
+            // Not delay-seconds
+        }
+        try {
+            long date = ZonedDateTime
+                    .parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+            return Math.max(0, date - System.currentTimeMillis());
+        } catch (DateTimeParseException ex) {
+            return -1;
+        }
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the delay requested by the Retry-After header in ms, or -1 if
+     * it wasn't sent
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    public byte[] getBodyAsBytes() throws IOException {
+        if (this.body == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16384);
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = this.body.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public String getBodyAsString() throws IOException {
+        return new String(this.getBodyAsBytes(), this.charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.body != null) {
+                this.body.close();
+            }
+        } finally {
+            if (this.resource != null) {
+                this.resource.close();
+            }
+        }
+    }
+
+}
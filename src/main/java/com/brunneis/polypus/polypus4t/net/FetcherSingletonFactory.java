@@ -0,0 +1,62 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.nio.file.Paths;
+
+/**
+ *
+ * @author brunneis
+ */
+public class FetcherSingletonFactory {
+
+    private static Fetcher instance;
+
+    public synchronized static Fetcher getFetcherInstance(Integer type) {
+        if (instance == null) {
+            switch (type) {
+                case Conf.HTTP_CLIENT:
+                    instance = new HttpClientFetcher(
+                            Conf.HTTP_MAX_CONNECTIONS.value(),
+                            Conf.HTTP_TIMEOUT.value()
+                    );
+                    break;
+                case Conf.HTMLUNIT:
+                    instance = new HtmlUnitFetcher(Conf.HTTP_TIMEOUT.value());
+                    break;
+                default:
+                    return null;
+            }
+            if (Conf.RECORD_DIR.value() != null) {
+                instance = new RecordingFetcher(
+                        instance,
+                        Paths.get(Conf.RECORD_DIR.value())
+                );
+            }
+        }
+        return instance;
+    }
+
+    public synchronized static Fetcher getFetcherInstance() {
+        return getFetcherInstance(Conf.FETCHER.value());
+    }
+
+}
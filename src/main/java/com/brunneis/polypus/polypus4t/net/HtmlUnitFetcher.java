@@ -0,0 +1,86 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+
+/**
+ * HtmlUnit backend. A new browser is emulated for every request, so it is
+ * much more expensive than HttpClientFetcher.
+ *
+ * @author brunneis
+ */
+public class HtmlUnitFetcher implements Fetcher {
+
+    private final int timeout;
+
+    public HtmlUnitFetcher(int timeout) {
+        this.timeout = timeout;
+
+        java.util.logging.Logger.getLogger("com.gargoylesoftware.htmlunit")
+                .setLevel(Level.OFF);
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException {
+        WebClient webClient = new WebClient(BrowserVersion.BEST_SUPPORTED);
+        try {
+            webClient.getOptions().setCssEnabled(false);
+            webClient.getOptions().setJavaScriptEnabled(false);
+            webClient.getOptions().setTimeout(this.timeout);
+            webClient.getOptions().setRedirectEnabled(false);
+            webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+            webClient.getOptions().setThrowExceptionOnScriptError(false);
+            webClient.getOptions().setUseInsecureSSL(true);
+            webClient.getOptions().setAppletEnabled(false);
+
+            Page page = webClient.getPage(url);
+            WebResponse response = page.getWebResponse();
+            Charset charset = response.getContentCharsetOrNull();
+
+            return new FetchResponse(
+                    response.getStatusCode(),
+                    charset,
+                    response.getContentAsStream(),
+                    () -> {
+                        response.cleanUp();
+                        webClient.close();
+                    },
+                    FetchResponse.parseRetryAfter(
+                            response.getResponseHeaderValue("Retry-After")
+                    )
+            );
+        } catch (IOException | RuntimeException ex) {
+            webClient.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+}
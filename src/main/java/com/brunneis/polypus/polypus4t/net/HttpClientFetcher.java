@@ -0,0 +1,123 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Plain HTTP backend. Connections are pooled and kept alive across requests
+ * and threads, and gzip/deflate responses are transparently decoded.
+ *
+ * @author brunneis
+ */
+public class HttpClientFetcher implements Fetcher {
+
+    private static final String USER_AGENT
+            = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/79.0.3945.88 Safari/537.36";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+
+    public HttpClientFetcher(int maxConnections, int timeout) {
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        // Every request targets the same host
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setRedirectsEnabled(false)
+                .setCookieSpec(CookieSpecs.IGNORE_COOKIES)
+                .build();
+
+        // Content compression is enabled by default (Accept-Encoding: gzip)
+        this.client = HttpClients.custom()
+                .setConnectionManager(this.connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setUserAgent(USER_AGENT)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException {
+        HttpGet get = new HttpGet(url);
+        get.setHeader("X-Requested-With", "XMLHttpRequest");
+
+        CloseableHttpResponse response = this.client.execute(get);
+        Header retryAfter = response.getFirstHeader("Retry-After");
+        long retryAfterMs = FetchResponse.parseRetryAfter(
+                (retryAfter == null) ? null : retryAfter.getValue()
+        );
+
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return new FetchResponse(
+                    response.getStatusLine().getStatusCode(),
+                    null,
+                    null,
+                    response,
+                    retryAfterMs
+            );
+        }
+
+        ContentType contentType = ContentType.get(entity);
+        Charset charset = (contentType == null) ? null : contentType.getCharset();
+
+        return new FetchResponse(
+                response.getStatusLine().getStatusCode(),
+                charset,
+                entity.getContent(),
+                () -> {
+                    // Draining the entity releases the connection back to
+                    // the pool instead of discarding it
+                    try {
+                        EntityUtils.consume(entity);
+                    } finally {
+                        response.close();
+                    }
+                },
+                retryAfterMs
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.client.close();
+        this.connectionManager.shutdown();
+    }
+
+}
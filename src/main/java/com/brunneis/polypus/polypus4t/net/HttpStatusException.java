@@ -0,0 +1,62 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the remote end answers with a non-successful status code.
+ *
+ * @author brunneis
+ */
+public class HttpStatusException extends IOException {
+
+    private final int statusCode;
+    private final long retryAfter;
+
+    public HttpStatusException(int statusCode, String url) {
+        this(statusCode, url, -1);
+    }
+
+    public HttpStatusException(int statusCode, String url, long retryAfter) {
+        super("HTTP " + statusCode + " retrieving " + url);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the delay requested by the remote end in ms, or -1 if none
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return true if the remote end is shedding load (429 or 5xx)
+     */
+    public boolean isThrottling() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by every scraper worker, so the aggregate request rate
+ * is bounded no matter how many workers are running. The rate adapts to the
+ * remote end (AIMD): it grows additively while requests succeed and is
+ * halved when the remote end sheds load (429 or 5xx). A Retry-After delay
+ * holds every worker back. Network errors don't change the rate.
+ *
+ * @author brunneis
+ */
+public class RateLimiter {
+
+    // The rate is halved at most once per window, many requests in flight
+    // may be rejected by the same overload
+    private static final long DECREASE_WINDOW = TimeUnit.SECONDS.toNanos(1);
+    // Pause after a throttling response without Retry-After
+    private static final long DEFAULT_PAUSE = 1000;
+
+    private final double minRate;
+    private final double maxRate;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long lastDecrease;
+    private long pauses;
+
+    /**
+     * @param rate initial requests per second
+     * @param minRate lower bound of the adaptive rate
+     * @param maxRate upper bound of the adaptive rate
+     */
+    public RateLimiter(double rate, double minRate, double maxRate) {
+        this.minRate = minRate;
+        this.maxRate = Math.max(minRate, maxRate);
+        this.rate = Math.min(this.maxRate, Math.max(minRate, rate));
+        this.tokens = 1;
+        this.lastRefill = System.nanoTime();
+        this.lastDecrease = this.lastRefill - DECREASE_WINDOW;
+    }
+
+    /**
+     * Blocks until a request may be sent.
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            long epoch;
+            synchronized (this) {
+                long now = System.nanoTime();
+                this.refill(now);
+                // A negative balance queues the caller behind earlier ones
+                this.tokens -= 1;
+                wait = Math.max(0, this.lastRefill - now);
+                if (this.tokens < 0) {
+                    wait += (long) (-this.tokens * 1e9 / this.rate);
+                }
+                epoch = this.pauses;
+            }
+            if (wait == 0) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+            synchronized (this) {
+                if (epoch == this.pauses) {
+                    return;
+                }
+            }
+            // Throttled while waiting, the request is queued again
+        }
+    }
+
+    /**
+     * Additive increase, about one request per second every second.
+     */
+    public synchronized void success() {
+        this.rate = Math.min(this.maxRate, this.rate + 1 / this.rate);
+    }
+
+    /**
+     * Multiplicative decrease, and no request is let through until the
+     * requested delay is over.
+     *
+     * @param retryAfter delay in ms requested by the remote end, or -1
+     */
+    public synchronized void throttled(long retryAfter) {
+        long now = System.nanoTime();
+        this.refill(now);
+        if (now - this.lastDecrease >= DECREASE_WINDOW) {
+            this.rate = Math.max(this.minRate, this.rate / 2);
+            this.lastDecrease = now;
+        }
+
+        long pause = (retryAfter >= 0) ? retryAfter : DEFAULT_PAUSE;
+        long resume = now + TimeUnit.MILLISECONDS.toNanos(pause);
+        // Tokens are not accumulated while paused, nor is a burst let
+        // through when resuming. Waiting callers queue again.
+        this.tokens = 0;
+        this.pauses++;
+        if (resume - this.lastRefill > 0) {
+            this.lastRefill = resume;
+        }
+    }
+
+    public synchronized double getRate() {
+        return this.rate;
+    }
+
+    private void refill(long now) {
+        if (now - this.lastRefill > 0) {
+            // Up to one second worth of requests can be sent in a burst
+            this.tokens = Math.min(
+                    Math.max(1, this.rate),
+                    this.tokens + (now - this.lastRefill) * this.rate / 1e9
+            );
+            this.lastRefill = now;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves every successful response of another Fetcher into a directory, so
+ * real search pages can be replayed later by the ReplayServer.
+ *
+ * @author brunneis
+ */
+public class RecordingFetcher implements Fetcher {
+
+    private final Fetcher fetcher;
+    private final Path directory;
+    private final AtomicLong counter;
+
+    public RecordingFetcher(Fetcher fetcher, Path directory) {
+        this.fetcher = fetcher;
+        this.directory = directory;
+        this.counter = new AtomicLong();
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException {
+        FetchResponse response = this.fetcher.fetch(url);
+        if (response.getStatusCode() != 200) {
+            return response;
+        }
+
+        byte[] body;
+        try (FetchResponse recorded = response) {
+            body = recorded.getBodyAsBytes();
+        }
+        Files.createDirectories(this.directory);
+        Files.write(this.directory.resolve(String.format(
+                "recorded-%d-%05d.json",
+                System.currentTimeMillis(),
+                this.counter.incrementAndGet()
+        )), body);
+
+        return new FetchResponse(
+                response.getStatusCode(),
+                response.getCharset(),
+                new ByteArrayInputStream(body),
+                null,
+                response.getRetryAfter()
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.fetcher.close();
+    }
+
+}
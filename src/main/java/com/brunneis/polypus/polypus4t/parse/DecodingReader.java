@@ -0,0 +1,117 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.parse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * InputStreamReader that can be pointed at another stream, so the buffers
+ * and the decoder are allocated once per thread instead of once per page.
+ * Malformed input is replaced, as InputStreamReader does.
+ *
+ * @author brunneis
+ */
+public class DecodingReader extends Reader {
+
+    private final ByteBuffer bytes;
+    private InputStream in;
+    private Charset charset;
+    private CharsetDecoder decoder;
+    private boolean eof;
+    private boolean flushed;
+
+    public DecodingReader() {
+        this.bytes = ByteBuffer.allocate(8192);
+    }
+
+    /**
+     * Starts reading another stream. The previous one is not closed.
+     */
+    public DecodingReader reset(InputStream in, Charset charset) {
+        this.in = in;
+        if (!charset.equals(this.charset)) {
+            this.charset = charset;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            this.decoder.reset();
+        }
+        this.bytes.clear();
+        // Nothing buffered to be decoded
+        this.bytes.flip();
+        this.eof = false;
+        this.flushed = false;
+        return this;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off) {
+            if (this.flushed) {
+                return -1;
+            }
+            CoderResult result = this.decoder.decode(this.bytes, out, this.eof);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (this.eof) {
+                this.decoder.flush(out);
+                this.flushed = true;
+                break;
+            }
+            // More input needed
+            this.bytes.compact();
+            int read = this.in.read(
+                    this.bytes.array(),
+                    this.bytes.position(),
+                    this.bytes.remaining()
+            );
+            if (read < 0) {
+                this.eof = true;
+            } else {
+                this.bytes.position(this.bytes.position() + read);
+            }
+            this.bytes.flip();
+        }
+        int read = out.position() - off;
+        return (read == 0 && this.flushed) ? -1 : read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+        }
+    }
+
+}
@@ -0,0 +1,364 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.parse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming reader for the JSON returned by i/search/timeline. Only the
+ * fields the scraper needs are decoded; the items_html value is never
+ * materialized and is handed out as a character stream instead.
+ *
+ * @author brunneis
+ */
+public class SearchTimelineReader implements Closeable {
+
+    private static final String ITEMS_HTML = "items_html";
+    private static final String MIN_POSITION = "min_position";
+    private static final String HAS_MORE_ITEMS = "has_more_items";
+
+    private Reader in;
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+
+    private boolean started;
+    private boolean finished;
+    private ItemsReader items;
+
+    private String minPosition;
+    private Boolean hasMoreItems;
+
+    public SearchTimelineReader(Reader in) {
+        this.in = in;
+        this.buffer = new char[8192];
+    }
+
+    /**
+     * Starts reading another response, so the reader can be reused.
+     */
+    public SearchTimelineReader reset(Reader in) {
+        this.in = in;
+        this.pos = 0;
+        this.limit = 0;
+        this.started = false;
+        this.finished = false;
+        this.items = null;
+        this.minPosition = null;
+        this.hasMoreItems = null;
+        return this;
+    }
+
+    /**
+     * Positions the reader at the items_html value. The returned stream is
+     * only valid until any other method of this class is called.
+     */
+    public Reader openItemsHtml() throws IOException {
+        if (this.items != null) {
+            throw new IllegalStateException("items_html already opened");
+        }
+        if (!this.seek(ITEMS_HTML)) {
+            return new ItemsReader(true);
+        }
+        int c = this.nextNonWhitespace();
+        if (c != '"') {
+            // null or unexpected value
+            this.unread(c);
+            this.skipValue();
+            return new ItemsReader(true);
+        }
+        this.items = new ItemsReader(false);
+        return this.items;
+    }
+
+    public String getMinPosition() throws IOException {
+        if (this.minPosition == null) {
+            this.seek(null);
+        }
+        return this.minPosition;
+    }
+
+    public Boolean hasMoreItems() throws IOException {
+        if (this.hasMoreItems == null) {
+            this.seek(null);
+        }
+        return this.hasMoreItems;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Walks the top-level object until the given key is found (the reader is
+     * then left before its value) or the object ends. Known scalar fields are
+     * recorded on the way.
+     */
+    private boolean seek(String target) throws IOException {
+        if (this.items != null && !this.items.done) {
+            this.items.skipRemaining();
+        }
+        if (this.finished) {
+            return false;
+        }
+        if (!this.started) {
+            if (this.nextNonWhitespace() != '{') {
+                throw this.syntaxError("object expected");
+            }
+            this.started = true;
+        }
+
+        while (true) {
+            int c = this.nextNonWhitespace();
+            if (c == ',') {
+                c = this.nextNonWhitespace();
+            }
+            if (c == '}' || c == -1) {
+                this.finished = true;
+                return false;
+            }
+            if (c != '"') {
+                throw this.syntaxError("name expected");
+            }
+            String name = this.readString();
+            if (this.nextNonWhitespace() != ':') {
+                throw this.syntaxError("':' expected");
+            }
+
+            if (name.equals(target)) {
+                return true;
+            }
+            switch (name) {
+                case MIN_POSITION:
+                    c = this.nextNonWhitespace();
+                    if (c == '"') {
+                        this.minPosition = this.readString();
+                    } else {
+                        this.unread(c);
+                        this.skipValue();
+                    }
+                    break;
+                case HAS_MORE_ITEMS:
+                    c = this.nextNonWhitespace();
+                    this.unread(c);
+                    if (c == 't' || c == 'f') {
+                        this.hasMoreItems = c == 't';
+                    }
+                    this.skipValue();
+                    break;
+                default:
+                    this.skipValue();
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = this.in.read(this.buffer, 0, this.buffer.length);
+        if (read <= 0) {
+            this.pos = 0;
+            this.limit = 0;
+            return false;
+        }
+        this.pos = 0;
+        this.limit = read;
+        return true;
+    }
+
+    private int next() throws IOException {
+        if (this.pos == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.pos++];
+    }
+
+    private void unread(int c) {
+        if (c != -1) {
+            this.pos--;
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = this.next();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private String readString() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = this.next()) != '"') {
+            if (c == -1) {
+                throw this.syntaxError("unterminated string");
+            }
+            sb.append(c == '\\' ? this.readEscaped() : (char) c);
+        }
+        return sb.toString();
+    }
+
+    private char readEscaped() throws IOException {
+        int c = this.next();
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(this.next(), 16);
+                    if (digit < 0) {
+                        throw this.syntaxError("invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case -1:
+                throw this.syntaxError("unterminated escape");
+            default:
+                // \" \\ \/
+                return (char) c;
+        }
+    }
+
+    private void skipString() throws IOException {
+        int c;
+        while ((c = this.next()) != '"') {
+            if (c == -1) {
+                throw this.syntaxError("unterminated string");
+            }
+            if (c == '\\') {
+                this.readEscaped();
+            }
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            int c = this.nextNonWhitespace();
+            switch (c) {
+                case '"':
+                    this.skipString();
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case -1:
+                    throw this.syntaxError("unexpected end of input");
+                default:
+                    if (c == ',' || c == ':') {
+                        break;
+                    }
+                    // number, true, false or null
+                    while (this.pos < this.limit || this.fill()) {
+                        char p = this.buffer[this.pos];
+                        if (p == ',' || p == '}' || p == ']' || p == ' '
+                                || p == '\n' || p == '\r' || p == '\t') {
+                            break;
+                        }
+                        this.pos++;
+                    }
+            }
+        } while (depth > 0);
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed search timeline JSON: " + message);
+    }
+
+    /**
+     * Decodes the items_html string value as it is read.
+     */
+    private class ItemsReader extends Reader {
+
+        private boolean done;
+
+        private ItemsReader(boolean done) {
+            this.done = done;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (this.done) {
+                return -1;
+            }
+            int written = 0;
+            while (written < len) {
+                if (pos == limit && !fill()) {
+                    throw syntaxError("unterminated items_html");
+                }
+                // Bulk copy of the unescaped run
+                int start = pos;
+                int end = Math.min(limit, start + (len - written));
+                int i = start;
+                while (i < end) {
+                    char c = buffer[i];
+                    if (c == '"' || c == '\\') {
+                        break;
+                    }
+                    i++;
+                }
+                System.arraycopy(buffer, start, cbuf, off + written, i - start);
+                written += i - start;
+                pos = i;
+
+                if (i < end) {
+                    pos++;
+                    if (buffer[i] == '"') {
+                        this.done = true;
+                        break;
+                    }
+                    cbuf[off + written++] = readEscaped();
+                }
+            }
+            return (written == 0 && this.done) ? -1 : written;
+        }
+
+        private void skipRemaining() throws IOException {
+            char[] discard = new char[4096];
+            while (this.read(discard, 0, discard.length) != -1) {
+                // Drain
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The underlying stream belongs to the enclosing reader
+        }
+
+    }
+
+}
@@ -0,0 +1,572 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.parse;
+
+import com.brunneis.polypus.polypus4t.vo.ScrapedTweet;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single-pass extractor for the items_html fragment of the search timeline.
+ * The HTML is tokenized on the fly (no DOM is built) and one record is
+ * emitted for every tweet container (div[data-tweet-id]), taking the text of
+ * its first p[lang] and the timestamp of its first span[data-time-ms], so the
+ * fields of different tweets can never be mixed up.
+ *
+ * @author brunneis
+ */
+public class TweetExtractor {
+
+    private static final int OTHER = 0;
+    private static final int DIV = 1;
+    private static final int P = 2;
+    private static final int SPAN = 3;
+    private static final int RAW_TEXT = 4;
+
+    private Reader in;
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+
+    // Reusable scratch buffers
+    private final StringBuilder tagName;
+    private final StringBuilder attrName;
+    private final StringBuilder attrValue;
+    private final StringBuilder text;
+    private final StringBuilder entity;
+
+    // Attributes of the last start tag (-1 or false if missing)
+    private long tweetId;
+    private long userId;
+    private long timeMs;
+    private final StringBuilder screenName;
+    private final StringBuilder name;
+    private final StringBuilder lang;
+    private boolean hasScreenName;
+    private boolean hasName;
+    private boolean hasLang;
+
+    // State of the current tweet container
+    private ScrapedTweet current;
+    private int containerDepth;
+    private boolean capturingText;
+
+    public TweetExtractor(Reader in) {
+        this.in = in;
+        this.buffer = new char[8192];
+        this.tagName = new StringBuilder(16);
+        this.attrName = new StringBuilder(32);
+        this.attrValue = new StringBuilder(64);
+        this.text = new StringBuilder(512);
+        this.entity = new StringBuilder(8);
+        this.screenName = new StringBuilder(32);
+        this.name = new StringBuilder(64);
+        this.lang = new StringBuilder(8);
+    }
+
+    /**
+     * Starts reading another fragment, so the extractor can be reused.
+     */
+    public TweetExtractor reset(Reader in) {
+        this.in = in;
+        this.pos = 0;
+        this.limit = 0;
+        this.current = null;
+        this.containerDepth = 0;
+        this.capturingText = false;
+        return this;
+    }
+
+    /**
+     * Fills the given record with the next tweet of the stream.
+     *
+     * @return false when there are no more tweets
+     */
+    public boolean next(ScrapedTweet tweet) throws IOException {
+        tweet.reset();
+        this.current = tweet;
+        this.containerDepth = 0;
+        this.capturingText = false;
+
+        while (true) {
+            if (this.pos == this.limit && !this.fill()) {
+                // Unclosed container at the end of the fragment
+                if (this.containerDepth > 0) {
+                    this.endContainer();
+                    return true;
+                }
+                return false;
+            }
+
+            if (this.capturingText) {
+                this.readText();
+            } else {
+                this.skipText();
+            }
+
+            if (this.pos < this.limit && this.buffer[this.pos] == '<') {
+                this.pos++;
+                if (this.readTag()) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = this.in.read(this.buffer, 0, this.buffer.length);
+        this.pos = 0;
+        this.limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private int read() throws IOException {
+        if (this.pos == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.pos++];
+    }
+
+    private void unread(int c) {
+        if (c != -1) {
+            this.pos--;
+        }
+    }
+
+    private void skipText() {
+        int i = this.pos;
+        while (i < this.limit && this.buffer[i] != '<') {
+            i++;
+        }
+        this.pos = i;
+    }
+
+    private void readText() throws IOException {
+        while (this.pos < this.limit) {
+            int start = this.pos;
+            int i = start;
+            while (i < this.limit && this.buffer[i] != '<' && this.buffer[i] != '&') {
+                i++;
+            }
+            this.text.append(this.buffer, start, i - start);
+            this.pos = i;
+            if (i == this.limit || this.buffer[i] == '<') {
+                return;
+            }
+            this.pos++;
+            this.readEntity(this.text);
+        }
+    }
+
+    /**
+     * Reads a tag after its opening '&lt;'.
+     *
+     * @return true if a tweet container has been closed
+     */
+    private boolean readTag() throws IOException {
+        int c = this.read();
+        if (c == '!') {
+            c = this.read();
+            if (c == '-') {
+                this.skipComment();
+            } else {
+                this.unread(c);
+                this.skipUntil('>');
+            }
+            return false;
+        }
+        if (c == '?') {
+            this.skipUntil('>');
+            return false;
+        }
+        if (c == '/') {
+            this.readName(this.read());
+            this.skipUntil('>');
+            return this.endTag();
+        }
+        if (!Character.isLetter(c)) {
+            // Stray '<' in text
+            if (this.capturingText) {
+                this.text.append('<');
+            }
+            this.unread(c);
+            return false;
+        }
+
+        this.readName(c);
+        int kind = this.tagKind();
+        this.readAttributes(kind);
+        return this.startTag(kind);
+    }
+
+    private void readName(int c) throws IOException {
+        this.tagName.setLength(0);
+        while (c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == ':')) {
+            this.tagName.append(Character.toLowerCase((char) c));
+            c = this.read();
+        }
+        this.unread(c);
+    }
+
+    private int tagKind() {
+        if (this.nameIs(this.tagName, "div")) {
+            return DIV;
+        } else if (this.nameIs(this.tagName, "p")) {
+            return P;
+        } else if (this.nameIs(this.tagName, "span")) {
+            return SPAN;
+        } else if (this.nameIs(this.tagName, "script")
+                || this.nameIs(this.tagName, "style")) {
+            return RAW_TEXT;
+        }
+        return OTHER;
+    }
+
+    private void readAttributes(int kind) throws IOException {
+        this.tweetId = -1;
+        this.userId = -1;
+        this.timeMs = -1;
+        this.hasScreenName = false;
+        this.hasName = false;
+        this.hasLang = false;
+
+        while (true) {
+            int c = this.read();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '/') {
+                c = this.read();
+            }
+            if (c == '>' || c == -1) {
+                return;
+            }
+
+            this.attrName.setLength(0);
+            while (c != -1 && c != '=' && c != '>' && c != '/'
+                    && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                this.attrName.append(Character.toLowerCase((char) c));
+                c = this.read();
+            }
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                c = this.read();
+            }
+            if (c != '=') {
+                // Attribute without value
+                this.unread(c);
+                continue;
+            }
+
+            // The value is left in attrValue
+            if (!this.readAttributeValue(this.isWanted(kind))) {
+                continue;
+            }
+            switch (kind) {
+                case DIV:
+                    if (this.nameIs(this.attrName, "data-tweet-id")) {
+                        this.tweetId = parseId(this.attrValue);
+                    } else if (this.nameIs(this.attrName, "data-user-id")) {
+                        this.userId = parseId(this.attrValue);
+                    } else if (this.nameIs(this.attrName, "data-screen-name")) {
+                        this.hasScreenName = copy(this.attrValue, this.screenName);
+                    } else if (this.nameIs(this.attrName, "data-name")) {
+                        this.hasName = copy(this.attrValue, this.name);
+                    }
+                    break;
+                case P:
+                    this.hasLang = copy(this.attrValue, this.lang);
+                    break;
+                case SPAN:
+                    this.timeMs = parseId(this.attrValue);
+                    break;
+            }
+        }
+    }
+
+    private boolean isWanted(int kind) {
+        switch (kind) {
+            case DIV:
+                return this.nameIs(this.attrName, "data-tweet-id")
+                        || this.nameIs(this.attrName, "data-user-id")
+                        || this.nameIs(this.attrName, "data-screen-name")
+                        || this.nameIs(this.attrName, "data-name");
+            case P:
+                return this.containerDepth > 0
+                        && this.nameIs(this.attrName, "lang");
+            case SPAN:
+                return this.containerDepth > 0
+                        && this.nameIs(this.attrName, "data-time-ms");
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAttributeValue(boolean keep) throws IOException {
+        int c = this.read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = this.read();
+        }
+        this.attrValue.setLength(0);
+
+        if (c == '"' || c == '\'') {
+            int quote = c;
+            while ((c = this.read()) != quote && c != -1) {
+                if (!keep) {
+                    continue;
+                }
+                if (c == '&') {
+                    this.readEntity(this.attrValue);
+                } else {
+                    this.attrValue.append((char) c);
+                }
+            }
+        } else {
+            while (c != -1 && c != '>' && c != ' ' && c != '\n'
+                    && c != '\r' && c != '\t') {
+                if (keep) {
+                    if (c == '&') {
+                        this.readEntity(this.attrValue);
+                    } else {
+                        this.attrValue.append((char) c);
+                    }
+                }
+                c = this.read();
+            }
+            this.unread(c);
+        }
+        if (keep) {
+            trim(this.attrValue);
+        }
+        return keep;
+    }
+
+    private boolean startTag(int kind) throws IOException {
+        switch (kind) {
+            case DIV:
+                // A block element implicitly closes an open paragraph
+                this.endText();
+                if (this.containerDepth > 0) {
+                    this.containerDepth++;
+                } else if (this.tweetId >= 0) {
+                    this.containerDepth = 1;
+                    this.current.setPostId(this.tweetId);
+                    this.current.setAuthorId(this.userId);
+                    this.current.setAuthorNickname(
+                            this.hasScreenName ? this.screenName : null);
+                    this.current.setAuthorName(this.hasName ? this.name : null);
+                }
+                break;
+            case P:
+                this.endText();
+                if (this.hasLang && this.current.getLanguage() == null) {
+                    this.current.setLanguage(this.lang);
+                    this.text.setLength(0);
+                    this.capturingText = true;
+                }
+                break;
+            case SPAN:
+                if (this.timeMs >= 0
+                        && this.current.getPublicationTimestamp() < 0) {
+                    this.current.setPublicationTimestamp(this.timeMs);
+                }
+                break;
+            case RAW_TEXT:
+                this.skipRawText();
+                break;
+        }
+        return false;
+    }
+
+    private boolean endTag() {
+        if (this.nameIs(this.tagName, "p")) {
+            this.endText();
+        } else if (this.nameIs(this.tagName, "div") && this.containerDepth > 0) {
+            this.endText();
+            this.containerDepth--;
+            if (this.containerDepth == 0) {
+                this.endContainer();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void endText() {
+        if (this.capturingText) {
+            trim(this.text);
+            this.current.setContent(this.text);
+            this.capturingText = false;
+        }
+    }
+
+    private void endContainer() {
+        this.endText();
+        this.containerDepth = 0;
+    }
+
+    private static boolean copy(StringBuilder value, StringBuilder target) {
+        target.setLength(0);
+        target.append(value);
+        return true;
+    }
+
+    /**
+     * Same as String.trim, in place.
+     */
+    private static void trim(StringBuilder sb) {
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        sb.setLength(end);
+        int start = 0;
+        while (start < end && sb.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start > 0) {
+            sb.delete(0, start);
+        }
+    }
+
+    /**
+     * @return the non-negative decimal value, or -1 if it isn't one
+     */
+    private static long parseId(CharSequence value) {
+        int length = value.length();
+        if (length == 0) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9
+                    || id > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    private void skipUntil(char end) throws IOException {
+        int c;
+        do {
+            c = this.read();
+        } while (c != end && c != -1);
+    }
+
+    private void skipComment() throws IOException {
+        // "<!-" already consumed
+        int dashes = 0;
+        int c;
+        while ((c = this.read()) != -1) {
+            if (c == '>' && dashes >= 2) {
+                return;
+            }
+            dashes = (c == '-') ? dashes + 1 : 0;
+        }
+    }
+
+    private void skipRawText() throws IOException {
+        // Skip everything until the matching closing tag
+        String end = "</" + this.tagName;
+        int matched = 0;
+        int c;
+        while (matched < end.length() && (c = this.read()) != -1) {
+            if (Character.toLowerCase((char) c) == end.charAt(matched)) {
+                matched++;
+            } else {
+                matched = (c == '<') ? 1 : 0;
+            }
+        }
+        this.skipUntil('>');
+    }
+
+    private void readEntity(StringBuilder target) throws IOException {
+        // '&' already consumed
+        this.entity.setLength(0);
+        int c = this.read();
+        while (c != -1 && c != ';' && this.entity.length() < 10
+                && (Character.isLetterOrDigit(c) || c == '#')) {
+            this.entity.append((char) c);
+            c = this.read();
+        }
+
+        if (c == ';') {
+            int codePoint = this.decodeEntity();
+            if (codePoint >= 0) {
+                target.appendCodePoint(codePoint);
+                return;
+            }
+            target.append('&').append(this.entity).append(';');
+            return;
+        }
+        // Not an entity, the characters are kept as they are
+        target.append('&').append(this.entity);
+        this.unread(c);
+    }
+
+    private int decodeEntity() {
+        StringBuilder e = this.entity;
+        if (e.length() > 1 && e.charAt(0) == '#') {
+            int radix = 10;
+            int start = 1;
+            if (e.charAt(1) == 'x' || e.charAt(1) == 'X') {
+                radix = 16;
+                start = 2;
+            }
+            int value = 0;
+            for (int i = start; i < e.length(); i++) {
+                int digit = Character.digit(e.charAt(i), radix);
+                if (digit < 0 || value > 0x10FFFF) {
+                    return -1;
+                }
+                value = value * radix + digit;
+            }
+            return (start < e.length() && Character.isValidCodePoint(value)) ? value : -1;
+        }
+        if (this.nameIs(e, "amp") || this.nameIs(e, "AMP")) {
+            return '&';
+        } else if (this.nameIs(e, "lt") || this.nameIs(e, "LT")) {
+            return '<';
+        } else if (this.nameIs(e, "gt") || this.nameIs(e, "GT")) {
+            return '>';
+        } else if (this.nameIs(e, "quot") || this.nameIs(e, "QUOT")) {
+            return '"';
+        } else if (this.nameIs(e, "apos")) {
+            return '\'';
+        } else if (this.nameIs(e, "nbsp")) {
+            return ' ';
+        } else if (this.nameIs(e, "hellip")) {
+            return '…';
+        }
+        return -1;
+    }
+
+    private boolean nameIs(StringBuilder sb, String value) {
+        if (sb.length() != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (sb.charAt(i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
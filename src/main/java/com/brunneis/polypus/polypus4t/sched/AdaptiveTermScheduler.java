@@ -0,0 +1,182 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.sched;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Polls every term at a rate driven by its recent yield of unseen posts.
+ * High-yield terms are re-polled more often, while terms that return nothing
+ * back off exponentially. Requests are dispatched in due order and never
+ * faster than the global budget, so spare requests go to the terms that
+ * produce new tweets.
+ *
+ * @author brunneis
+ */
+public class AdaptiveTermScheduler implements TermScheduler {
+
+    // Tweets per search timeline page
+    private static final int PAGE_SIZE = 20;
+    // Weight of the last request in the yield average
+    private static final double ALPHA = 0.3;
+
+    private final PriorityQueue<TermTask> queue;
+    private final ReentrantLock lock;
+    private final Condition available;
+    private final WorkerStats stats;
+    private final int size;
+
+    private final long minInterval;
+    private final long maxInterval;
+    // Milliseconds between two requests (0 = unlimited budget)
+    private final long spacing;
+    private long nextSlot;
+
+    private Logger logger;
+
+    public AdaptiveTermScheduler(
+            int workers,
+            ArrayList<String> languages,
+            HashMap<String, String[]> terms,
+            int budget,
+            long minInterval,
+            long maxInterval
+    ) {
+        logger = Logger.getLogger(AdaptiveTermScheduler.class.getName());
+        logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.queue = new PriorityQueue<>(
+                Math.max(1, terms.size()),
+                (a, b) -> Long.compare(a.nextPoll, b.nextPoll)
+        );
+        this.lock = new ReentrantLock();
+        this.available = this.lock.newCondition();
+        this.stats = new WorkerStats(workers);
+        this.minInterval = minInterval;
+        this.maxInterval = Math.max(minInterval, maxInterval);
+        this.spacing = (budget > 0) ? 60000L / budget : 0;
+
+        // Every term is due at the beginning
+        long now = System.currentTimeMillis();
+        int total = 0;
+        for (String lang : languages) {
+            for (String term : terms.get(lang)) {
+                TermTask task = new TermTask(lang, term);
+                task.nextPoll = now;
+                task.yield = PAGE_SIZE;
+                this.queue.add(task);
+                total++;
+            }
+        }
+        this.size = total;
+        this.nextSlot = now;
+    }
+
+    @Override
+    public TermTask poll(int worker, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                TermTask head = this.queue.peek();
+                long due = deadline;
+                if (head != null) {
+                    due = Math.max(head.nextPoll, this.nextSlot);
+                    if (due <= now) {
+                        this.queue.poll();
+                        this.nextSlot = Math.max(this.nextSlot, now) + this.spacing;
+                        this.stats.taken(worker, head, false);
+                        return head;
+                    }
+                }
+                if (now >= deadline) {
+                    return null;
+                }
+                this.available.await(Math.min(due, deadline) - now,
+                        TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void release(int worker, TermTask task, int newPosts) {
+        task.yield = ALPHA * newPosts + (1 - ALPHA) * task.yield;
+        if (newPosts == 0) {
+            // Exponential backoff on dead terms
+            task.dryPolls = Math.min(task.dryPolls + 1, 30);
+        } else {
+            task.dryPolls = 0;
+        }
+        this.requeue(task);
+        this.stats.released(worker, task, newPosts, logger);
+    }
+
+    @Override
+    public void fail(int worker, TermTask task) {
+        // The yield of the term is unknown, it is retried at its current pace
+        this.requeue(task);
+        this.stats.released(worker, task, 0, logger);
+    }
+
+    private void requeue(TermTask task) {
+        long interval;
+        if (task.dryPolls > 0) {
+            interval = this.minInterval << task.dryPolls;
+        } else {
+            // A full page of new tweets means the term is polled too slowly
+            interval = (long) (this.minInterval * PAGE_SIZE / task.yield);
+        }
+        if (interval <= 0 || interval > this.maxInterval) {
+            interval = this.maxInterval;
+        }
+        task.nextPoll = System.currentTimeMillis()
+                + Math.max(this.minInterval, interval);
+
+        this.lock.lock();
+        try {
+            this.queue.add(task);
+            this.available.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void logUtilisation() {
+        this.stats.log(logger);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.sched;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out (lang, term) tasks to the scraper-threads. Every task taken with
+ * poll must be given back with release once the request is done, along with
+ * the number of previously unseen posts it returned, or with fail if the
+ * request could not be completed, so that the failure is not taken as a poll
+ * without new posts.
+ *
+ * @author brunneis
+ */
+public interface TermScheduler {
+
+    public TermTask poll(int worker, long timeout, TimeUnit unit)
+            throws InterruptedException;
+
+    public void release(int worker, TermTask task, int newPosts);
+
+    public void fail(int worker, TermTask task);
+
+    public int size();
+
+    public void logUtilisation();
+
+}
@@ -0,0 +1,67 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.sched;
+
+/**
+ * A search term in a given language, polled over and over by the scrapers.
+ *
+ * @author brunneis
+ */
+public class TermTask {
+
+    private final String language;
+    private final String term;
+    // Newest post id retrieved for the term (high-watermark)
+    private volatile long newestPostId;
+
+    // Scheduling state, only handled by the schedulers
+    int lap;
+    long nextPoll;
+    double yield;
+    int dryPolls;
+    long takenAt;
+
+    public TermTask(String language, String term) {
+        this.language = language;
+        this.term = term;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public long getNewestPostId() {
+        return newestPostId;
+    }
+
+    public void setNewestPostId(long newestPostId) {
+        this.newestPostId = newestPostId;
+    }
+
+    @Override
+    public String toString() {
+        return this.term + " lang:" + this.language;
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.sched;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Every scraper-thread owns a deque of tasks seeded round-robin. A thread
+ * takes from its own deque and, when it has nothing left for the current
+ * lap, steals from the others, so no thread sits idle while terms of the lap
+ * are pending. Released tasks go to the tail of the releasing thread's deque
+ * for the next lap, which starts once every task of the current one is done.
+ *
+ * @author brunneis
+ */
+public class WorkStealingTermScheduler implements TermScheduler {
+
+    private final ArrayList<ConcurrentLinkedDeque<TermTask>> queues;
+    private final WorkerStats stats;
+    private final int size;
+    private final AtomicInteger lap;
+    // Tasks of the current lap not yet released
+    private final AtomicInteger remaining;
+
+    private Logger logger;
+
+    public WorkStealingTermScheduler(
+            int workers,
+            ArrayList<String> languages,
+            HashMap<String, String[]> terms
+    ) {
+        logger = Logger.getLogger(WorkStealingTermScheduler.class.getName());
+        logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.queues = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            this.queues.add(new ConcurrentLinkedDeque<>());
+        }
+        this.stats = new WorkerStats(workers);
+
+        // Initial assignment of terms for each scraper-thread (round-robin)
+        int counter = 0;
+        int total = 0;
+        for (String lang : languages) {
+            for (String term : terms.get(lang)) {
+                this.queues.get(counter).addLast(new TermTask(lang, term));
+                counter = (counter + 1) % workers;
+                total++;
+            }
+        }
+        this.size = total;
+        this.lap = new AtomicInteger(0);
+        this.remaining = new AtomicInteger(total);
+    }
+
+    @Override
+    public TermTask poll(int worker, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            TermTask task = this.pollDue(this.queues.get(worker));
+            if (task != null) {
+                this.stats.taken(worker, task, false);
+                return task;
+            }
+
+            task = this.steal(worker);
+            if (task != null) {
+                this.stats.taken(worker, task, true);
+                return task;
+            }
+
+            // Every task of the lap is in flight
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+            LockSupport.parkNanos(1_000_000L);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private TermTask pollDue(ConcurrentLinkedDeque<TermTask> queue) {
+        // Deques are FIFO, so the head holds the tasks of the oldest lap
+        int current = this.lap.get();
+        TermTask head = queue.peekFirst();
+        if (head == null || head.lap > current) {
+            return null;
+        }
+        TermTask task = queue.pollFirst();
+        if (task != null && task.lap > current) {
+            // Lost a race for the head, the task is kept for the next lap
+            queue.addFirst(task);
+            return null;
+        }
+        return task;
+    }
+
+    private TermTask steal(int worker) {
+        int workers = this.queues.size();
+        for (int i = 1; i < workers; i++) {
+            TermTask task = this.pollDue(this.queues.get((worker + i) % workers));
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void release(int worker, TermTask task, int newPosts) {
+        task.lap++;
+        this.queues.get(worker).addLast(task);
+        if (this.remaining.decrementAndGet() == 0) {
+            this.remaining.set(this.size);
+            logger.log(Level.FINE, "scheduler | lap {0} finished",
+                    this.lap.getAndIncrement());
+        }
+        this.stats.released(worker, task, newPosts, logger);
+    }
+
+    @Override
+    public void fail(int worker, TermTask task) {
+        // Laps carry no yield, a failed task just waits for the next one
+        this.release(worker, task, 0);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void logUtilisation() {
+        this.stats.log(logger);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.sched;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-thread busy/idle accounting shared by the schedulers.
+ *
+ * @author brunneis
+ */
+public class WorkerStats {
+
+    private static final long REPORT_INTERVAL = 60_000_000_000L;
+
+    private final long startTime;
+    private final AtomicLongArray busyNanos;
+    private final AtomicLongArray tasks;
+    private final AtomicLongArray steals;
+    private final AtomicLong newPosts;
+    private final AtomicLong nextReport;
+
+    public WorkerStats(int workers) {
+        this.startTime = System.nanoTime();
+        this.busyNanos = new AtomicLongArray(workers);
+        this.tasks = new AtomicLongArray(workers);
+        this.steals = new AtomicLongArray(workers);
+        this.newPosts = new AtomicLong();
+        this.nextReport = new AtomicLong(this.startTime + REPORT_INTERVAL);
+    }
+
+    public void taken(int worker, TermTask task, boolean stolen) {
+        task.takenAt = System.nanoTime();
+        if (stolen) {
+            this.steals.incrementAndGet(worker);
+        }
+    }
+
+    public void released(int worker, TermTask task, int newPosts, Logger logger) {
+        long now = System.nanoTime();
+        this.busyNanos.addAndGet(worker, now - task.takenAt);
+        this.tasks.incrementAndGet(worker);
+        this.newPosts.addAndGet(newPosts);
+
+        // The first thread past the interval logs the report
+        long next = this.nextReport.get();
+        if (now >= next && this.nextReport.compareAndSet(next, now + REPORT_INTERVAL)) {
+            this.log(logger);
+        }
+    }
+
+    public void log(Logger logger) {
+        double elapsed = System.nanoTime() - this.startTime;
+        double total = 0;
+        long requests = 0;
+        for (int i = 0; i < this.busyNanos.length(); i++) {
+            double utilisation = 100 * this.busyNanos.get(i) / elapsed;
+            total += utilisation;
+            requests += this.tasks.get(i);
+            logger.log(Level.INFO,
+                    "worker {0} | utilisation: {1}% | tasks: {2} | steals: {3}",
+                    new Object[]{i + 1,
+                        String.format("%.1f", utilisation),
+                        this.tasks.get(i),
+                        this.steals.get(i)}
+            );
+        }
+        logger.log(Level.INFO,
+                "scheduler | mean utilisation: {0}% | new posts per request: {1}",
+                new Object[]{String.format("%.1f", total / this.busyNanos.length()),
+                    String.format("%.2f", (requests == 0) ? 0.0
+                            : (double) this.newPosts.get() / requests)}
+        );
+    }
+
+}
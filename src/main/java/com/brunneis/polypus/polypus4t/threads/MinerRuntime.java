@@ -0,0 +1,130 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.threads;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor on which every miner task runs. The platform backend is an
+ * unbounded pool of OS threads; the virtual backend starts a virtual thread
+ * per task, so thousands of miners can block on HTTP requests without an OS
+ * thread each. Virtual threads are looked up by reflection, the platform
+ * backend is used when the running JDK doesn't have them.
+ *
+ * @author brunneis
+ */
+public class MinerRuntime {
+
+    private static ExecutorService instance;
+
+    private static final Logger logger
+            = Logger.getLogger(MinerRuntime.class.getName());
+
+    public synchronized static ExecutorService getExecutorInstance(Integer type) {
+        if (instance == null) {
+            logger.setLevel(Conf.LOGGER_LEVEL.value());
+            switch (type) {
+                case Conf.VIRTUAL:
+                    instance = newVirtualThreadExecutor();
+                    if (instance != null) {
+                        break;
+                    }
+                    logger.log(Level.WARNING,
+                            "virtual threads not available, using platform threads");
+                case Conf.PLATFORM:
+                    instance = newPlatformThreadExecutor();
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return instance;
+    }
+
+    public synchronized static ExecutorService getExecutorInstance() {
+        return getExecutorInstance(Conf.RUNTIME.value());
+    }
+
+    /**
+     * Submits a miner task. The thread running it takes the given name until
+     * the task finishes.
+     */
+    public static Future<?> submit(String name, Runnable task) {
+        return getExecutorInstance().submit(() -> {
+            Thread thread = Thread.currentThread();
+            String previous = thread.getName();
+            thread.setName(name);
+            try {
+                task.run();
+            } finally {
+                thread.setName(previous);
+            }
+        });
+    }
+
+    /**
+     * Waits for the submitted tasks to finish and releases the executor.
+     */
+    public static void shutdown() {
+        ExecutorService executor;
+        synchronized (MinerRuntime.class) {
+            executor = instance;
+            instance = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.log(Level.INFO, "waiting for the miner tasks...");
+            }
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor() {
+        // Pipeline stages wait on each other, so the pool must not be bounded
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> new Thread(
+                runnable, "miner-" + counter.incrementAndGet()
+        ));
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+}
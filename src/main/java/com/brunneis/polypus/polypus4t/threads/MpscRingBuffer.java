@@ -0,0 +1,109 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.threads;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer, a ring
+ * of slots whose sequence numbers tell producers and the consumer whose turn
+ * it is (Vyukov's bounded queue). Nothing is allocated per element.
+ *
+ * @author brunneis
+ * @param <E>
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    // Next position to be claimed by a producer
+    private final AtomicLong tail;
+    // Next position to be read, only touched by the consumer
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+        this.head = 0;
+    }
+
+    /**
+     * Never blocks, safe from any thread.
+     *
+     * @return false if the ring is full and the element was not added
+     */
+    public boolean offer(E element) {
+        long position = this.tail.get();
+        while (true) {
+            int slot = (int) position & this.mask;
+            long diff = this.sequences.get(slot) - position;
+            if (diff == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.elements.lazySet(slot, element);
+                    // Published to the consumer
+                    this.sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = this.tail.get();
+            } else if (diff < 0) {
+                // The consumer hasn't freed the slot yet
+                return false;
+            } else {
+                // Claimed by another producer
+                position = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * Only to be called by the consumer thread.
+     *
+     * @return the oldest element, or null if the ring is empty
+     */
+    public E poll() {
+        int slot = (int) this.head & this.mask;
+        if (this.sequences.get(slot) != this.head + 1) {
+            return null;
+        }
+        E element = this.elements.get(slot);
+        this.elements.lazySet(slot, null);
+        // Free for the producers of the next lap
+        this.sequences.set(slot, this.head + this.mask + 1);
+        this.head++;
+        return element;
+    }
+
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.threads;
+
+import com.brunneis.polypus.polypus4t.parse.DecodingReader;
+import com.brunneis.polypus.polypus4t.parse.SearchTimelineReader;
+import com.brunneis.polypus.polypus4t.parse.TweetExtractor;
+import com.brunneis.polypus.polypus4t.sched.TermTask;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
+import com.brunneis.polypus.polypus4t.vo.ScrapedTweet;
+import com.brunneis.polypus.polypus4t.vo.Utf8;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Turns a search timeline response into DigitalPosts. Not thread-safe: every
+ * thread parsing pages owns its own instance.
+ *
+ * @author brunneis
+ */
+public class PageParser {
+
+    // Reused for every page and every extracted tweet
+    private final DecodingReader decoder;
+    private final SearchTimelineReader timeline;
+    private final TweetExtractor extractor;
+    private final ScrapedTweet scraped;
+
+    public PageParser() {
+        this.decoder = new DecodingReader();
+        this.timeline = new SearchTimelineReader(null);
+        this.extractor = new TweetExtractor(null);
+        this.scraped = new ScrapedTweet();
+    }
+
+    private TweetExtractor openTweets(InputStream body, Charset charset)
+            throws IOException {
+        // Only items_html is decoded, the rest of the JSON is skipped
+        this.timeline.reset(this.decoder.reset(body, charset));
+        return this.extractor.reset(this.timeline.openItemsHtml());
+    }
+
+    /**
+     * Adds to posts the tweets of the page newer than the watermark of the
+     * task (the newest post id seen for the term). The watermark is only
+     * advanced once the page has been read up to it or to its end: if the
+     * body can't be read in full, the older tweets of the page haven't been
+     * seen and the next request must include them again.
+     *
+     * @return the number of new posts, whatever their language
+     */
+    public int parse(
+            TermTask task,
+            InputStream body,
+            Charset charset,
+            List<DigitalPost> posts
+    ) throws IOException {
+        String lang = task.getLanguage();
+        long watermark = task.getNewestPostId();
+        long newestPostId = watermark;
+        int newPosts = 0;
+
+        TweetExtractor extractor = openTweets(body, charset);
+
+        while (extractor.next(this.scraped)) {
+            // Tweets come newest first and ids are time-ordered, so the
+            // rest of the page was already retrieved
+            long postId = this.scraped.getPostId();
+            if (postId <= watermark) {
+                break;
+            }
+            newPosts++;
+            newestPostId = Math.max(newestPostId, postId);
+
+            // Containers without text or timestamp are skipped
+            if (!this.scraped.isComplete()
+                    || !lang.contentEquals(this.scraped.getLanguage())) {
+                continue;
+            }
+
+            // The texts are encoded straight from the record, the only
+            // allocations are the post itself and its payloads
+            posts.add(new DigitalPost(
+                    PostSource.TWITTER,
+                    lang,
+                    Utf8.encode(this.scraped.getContent()),
+                    Utf8.encode(this.scraped.getAuthorName()),
+                    Utf8.encode(this.scraped.getAuthorNickname()),
+                    this.scraped.getAuthorId(),
+                    postId,
+                    this.scraped.getPublicationTimestamp()
+                    // getRelevance(followers)
+            ));
+        }
+        task.setNewestPostId(newestPostId);
+
+        return newPosts;
+    }
+
+}
@@ -20,86 +20,124 @@
 package com.brunneis.polypus.polypus4t.threads;
 
 import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
 import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.dao.SeenPostsCache;
+import com.brunneis.polypus.polypus4t.net.FetchResponse;
+import com.brunneis.polypus.polypus4t.net.Fetcher;
+import com.brunneis.polypus.polypus4t.net.FetcherSingletonFactory;
+import com.brunneis.polypus.polypus4t.net.HttpStatusException;
+import com.brunneis.polypus.polypus4t.net.RateLimiter;
+import com.brunneis.polypus.polypus4t.net.RateLimiterSingletonFactory;
+import com.brunneis.polypus.polypus4t.sched.TermScheduler;
+import com.brunneis.polypus.polypus4t.sched.TermTask;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLEncoder;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import com.gargoylesoftware.htmlunit.BrowserVersion;
-import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
-import com.gargoylesoftware.htmlunit.Page;
-import com.gargoylesoftware.htmlunit.StringWebResponse;
-import com.gargoylesoftware.htmlunit.WebClient;
-import com.gargoylesoftware.htmlunit.WebResponse;
-import com.gargoylesoftware.htmlunit.html.DomElement;
-import com.gargoylesoftware.htmlunit.html.HTMLParser;
-import com.gargoylesoftware.htmlunit.html.HtmlPage;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-
-public class ScraperMiner extends Thread {
-
-    private final HashMap<String, DigitalPost> buffer;
-    private final HashMap<String, ArrayList<String>> targets;
+
+public class ScraperMiner implements Runnable {
+
+    // The page couldn't be retrieved or read
+    private static final int FAILED = -1;
+    // The request was throttled while the limiter holds back every worker
+    private static final int THROTTLED = -2;
+
+    private final String name;
+    private DigitalPostBuffer buffer;
+    private final TermScheduler scheduler;
+    private final int worker;
     private final long startTime;
     private final ThreadHelper th;
     private final int bufferSize;
+    private final Fetcher fetcher;
+    private final PageParser parser;
+    private final ArrayList<DigitalPost> posts;
+    private final SeenPostsCache seen;
 
     private Logger logger;
 
-    public ScraperMiner(String id, HashMap<String, ArrayList<String>> targets) {
+    public ScraperMiner(String id, TermScheduler scheduler) {
         logger = Logger.getLogger(ScraperMiner.class.getName());
         logger.setLevel(Conf.LOGGER_LEVEL.value());
 
-        super.setName(id);
-        this.buffer = new HashMap<>();
-        this.targets = targets;
+        this.name = id;
+        this.scheduler = scheduler;
         this.th = new ThreadHelper();
+        this.fetcher = FetcherSingletonFactory.getFetcherInstance();
+        this.parser = new PageParser();
+        this.posts = new ArrayList<>();
+        this.seen = SeenPostsCache.getInstance();
 
         int thread_int = Integer.parseInt(id.split("_")[0]);
+        this.worker = thread_int - 1;
 
         this.bufferSize = Conf.BUFFER.value()
                 + Conf.INCREMENT.value() * thread_int;
+        this.buffer = this.th.newBuffer(this.bufferSize);
 
         // Initial date in ms
         this.startTime = new Date().getTime();
     }
 
-    public HtmlPage getPage(String url) throws IOException {
-        try (WebClient webClient = new WebClient(BrowserVersion.BEST_SUPPORTED)) {
-            webClient.getOptions().setCssEnabled(false);
-            webClient.getOptions().setJavaScriptEnabled(false);
-            webClient.getOptions().setTimeout(5000);
-            webClient.getOptions().setRedirectEnabled(false);
-            webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
-            webClient.getOptions().setThrowExceptionOnScriptError(false);
-            webClient.getOptions().setUseInsecureSSL(true);
-            webClient.getOptions().setAppletEnabled(false);
-
-            Page jsonPage = webClient.getPage(url);
-            WebResponse response = jsonPage.getWebResponse();
-            String json = response.getContentAsString();
-
-            Map<String, String> map = new Gson().fromJson(
-                    json,
-                    new TypeToken<Map<String, String>>() {
-                    }.getType()
-            );
+    public String getName() {
+        return this.name;
+    }
 
-            StringWebResponse newResponse = new StringWebResponse(
-                    map.get("items_html"),
-                    new URL("http://localhost")
-            );
+    /**
+     * Retrieves a page, paced by the process-wide rate limiter if there is
+     * one. Responses other than 200 are thrown as HttpStatusException.
+     */
+    public static FetchResponse fetchPage(Fetcher fetcher, String url)
+            throws IOException {
+        RateLimiter limiter = RateLimiterSingletonFactory.getRateLimiterInstance();
+        if (limiter != null) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
 
-            return HTMLParser.parseHtml(
-                    newResponse,
-                    webClient.getCurrentWindow()
+        // Network errors are thrown as they are and don't affect the rate
+        FetchResponse response = fetcher.fetch(url);
+        if (response.getStatusCode() != 200) {
+            response.close();
+            HttpStatusException ex = new HttpStatusException(
+                    response.getStatusCode(),
+                    url,
+                    response.getRetryAfter()
             );
+            if (limiter != null && ex.isThrottling()) {
+                limiter.throttled(ex.getRetryAfter());
+            }
+            throw ex;
+        }
+        if (limiter != null) {
+            limiter.success();
+        }
+        return response;
+    }
+
+    public static String getSearchUrl(String lang, String term, long sinceId) {
+        String query = term + " lang:" + lang;
+        if (sinceId > 0) {
+            // Only tweets newer than the watermark are requested
+            query += " since_id:" + sinceId;
+        }
+        try {
+            return Conf.SEARCH_URL.value()
+                    + "?f=tweets&vertical=default&"
+                    + "q=" + URLEncoder.encode(query, "UTF-8")
+                    + "&src=typd";
+        } catch (java.io.UnsupportedEncodingException ex) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(ex);
         }
     }
 
@@ -107,159 +145,137 @@ public class ScraperMiner extends Thread {
     public void run() {
         logger.log(Level.INFO, "thread {0} | starting job...", getName());
 
-        int filled = 0;
-        for (String lang : this.targets.keySet()) {
-            if (!this.targets.get(lang).isEmpty()) {
-                filled++;
-            }
-        }
-        if (filled == 0) {
+        if (this.scheduler.size() == 0) {
             logger.log(Level.INFO,
                     "thread {0} | No target terms, job finished.", getName());
             return;
         }
 
-        // While there is time left, another lap is started
+        // While there is time left, another term is taken from the scheduler
         while (this.th.inTime(this.startTime)) {
-            // For each language:
-            for (String lang : this.targets.keySet()) {
-                // Exit if no more time left
-                if (!this.th.inTime(this.startTime)) {
-                    break;
-                }
+            if (this.th.isFlushDue()) {
+                // Posts are not held longer than FLUSH_MAX_MS
+                logger.log(Level.INFO,
+                        "thread {0} | mins_left: {1} | dumping by age...",
+                        new Object[]{getName(),
+                            this.th.getMinsLeft(startTime)}
+                );
+                this.buffer = this.th.dumpBuffer(this.buffer);
+            }
+
+            TermTask task;
+            try {
+                task = this.scheduler.poll(this.worker, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                break;
+            }
+            if (task == null) {
+                continue;
+            }
+
+            logger.log(
+                    Level.FINE,
+                    "thread {0} | counter: {1}",
+                    new Object[]{getName(), this.buffer.size()}
+            );
 
-                // For every term associated to each language
-                for (String term : this.targets.get(lang)) {
-                    logger.log(
-                            Level.FINE,
-                            "thread {0} | counter: {1}",
-                            new Object[]{getName(), this.buffer.size()}
-                    );
-
-                    // Exit if not more time left
-                    if (!this.th.inTime(this.startTime)) {
-                        break;
-                    }
-
-                    try {
-                        HtmlPage page;
-                        try {
-                            String url = "https://twitter.com/i/search/timeline"
-                                    + "?f=tweets&vertical=default&"
-                                    + "q=" + term
-                                    + " lang:" + lang
-                                    + " &src=typd";
-                            page = getPage(url);
-                        } catch (FailingHttpStatusCodeException | IOException e) {
-                            logger.log(Level.WARNING,
-                                    "thread {0} | mins_left: {1} | couldn't retrieve the page",
-                                    new Object[]{getName(),
-                                        this.th.getMinsLeft(startTime)}
-                            );
-                            sleep_under_exception();
-                            break;
-                        }
-
-                        List<?> tweetDataList;
-                        List<?> tweetTextList;
-                        List<?> tweetTimeList;
-                        try {
-                            tweetDataList = page.getByXPath("//div[@data-tweet-id]");
-                            tweetTextList = page.getByXPath("//p[@lang]");
-                            tweetTimeList = page.getByXPath("//span[@data-time-ms]");
-                            page.cleanUp();
-                        } catch (Exception ex) {
-                            logger.log(Level.SEVERE, null, ex);
-                            continue;
-                        }
-
-                        Integer streamSize = tweetDataList.size();
-
-                        for (int i = 0; i < streamSize; i++) {
-                            DomElement tweetData = (DomElement) tweetDataList.get(i);
-                            DomElement tweetText = (DomElement) tweetTextList.get(i);
-                            DomElement tweetTime = (DomElement) tweetTimeList.get(i);
-
-                            // Extracting information of the tweet
-                            String language = tweetText
-                                    .getAttribute("lang").trim();
-                            String content = tweetText
-                                    .getTextContent().trim();
-                            String authorName = tweetData
-                                    .getAttribute("data-name").trim();
-                            String authorNickname = tweetData
-                                    .getAttribute("data-screen-name").trim();
-                            String authorId = tweetData
-                                    .getAttribute("data-user-id").trim();
-                            String postId = tweetData
-                                    .getAttribute("data-tweet-id").trim();
-                            String publicationTimestamp = tweetTime
-                                    .getAttribute("data-time-ms").trim();
-
-                            // Get user followers
-                            // String url = "https://twitter.com/" + authorNickname;
-                            // try {
-                            //     page = webClient.getPage(url);
-                            // } catch (IOException | FailingHttpStatusCodeException ex) {
-                            //     continue;
-                            // }
-                            // List<?> userFollowersList = page.getByXPath("//a[@data-nav='followers']/span");
-                            // tweetData = (DomElement) userFollowersList.get(1);
-                            // Long followers = normalizeFollowers(tweetData.getTextContent().trim());
-                            // if (followers == null) {
-                            //     continue;
-                            // }
-                            // Every tweet is saved in the HashMap buffer
-                            if (lang.equals(language)) {
-
-                                DigitalPost tweet = new DigitalPost(
-                                        "twttr",
-                                        language,
-                                        content,
-                                        authorName,
-                                        authorNickname,
-                                        authorId,
-                                        postId,
-                                        publicationTimestamp,
-                                        null // getRelevance(followers)
-                                );
-
-                                // The tweet is added to the buffer if it is 
-                                // not already there
-                                if (!this.buffer
-                                        .containsKey(tweet.getPostId())) {
-                                    this.buffer.put(tweet.getPostId(), tweet);
-                                }
-
-                            }
-
-                            if (this.buffer.size() >= this.bufferSize) {
-                                logger.log(Level.INFO,
-                                        "thread {0} | mins_left: {1} | dumping...",
-                                        new Object[]{getName(),
-                                            this.th.getMinsLeft(startTime)}
-                                );
-                                this.th.dumpBuffer(buffer);
-                            }
-
-                        }
-
-                    } catch (Exception ex) {
-                        logger.log(Level.SEVERE,
-                                "thread " + getName()
-                                + " | not considered exception.", ex);
-                    }
-
-                    sleep();
+            int newPosts = FAILED;
+            try {
+                newPosts = this.mine(task);
+            } finally {
+                if (newPosts < 0) {
+                    this.scheduler.fail(this.worker, task);
+                } else {
+                    this.scheduler.release(this.worker, task, newPosts);
                 }
             }
+
+            if (newPosts == FAILED) {
+                sleep_under_exception();
+            } else if (newPosts != THROTTLED && Conf.RATE.value() == 0) {
+                // Without a rate limiter, requests are paced by SLEEP
+                sleep();
+            }
         }
 
-        this.th.dumpBuffer(buffer);
+        this.buffer = this.th.dumpBuffer(this.buffer);
         logger.log(Level.WARNING,
                 "thread {0} | job finished.", getName());
     }
 
+    /**
+     * Retrieves the tweets of a term newer than its watermark and adds them
+     * to the buffer.
+     *
+     * @return the number of new posts, FAILED if the page couldn't be
+     * retrieved or read, or THROTTLED
+     */
+    private int mine(TermTask task) {
+        FetchResponse response;
+        try {
+            response = fetchPage(this.fetcher, getSearchUrl(
+                    task.getLanguage(),
+                    task.getTerm(),
+                    task.getNewestPostId()
+            ));
+        } catch (HttpStatusException e) {
+            logger.log(Level.WARNING,
+                    "thread {0} | mins_left: {1} | couldn''t retrieve the page: HTTP {2}",
+                    new Object[]{getName(),
+                        this.th.getMinsLeft(startTime),
+                        e.getStatusCode()}
+            );
+            // The limiter already holds back every worker when throttled
+            return (Conf.RATE.value() > 0 && e.isThrottling())
+                    ? THROTTLED : FAILED;
+        } catch (IOException e) {
+            logger.log(Level.WARNING,
+                    "thread {0} | mins_left: {1} | couldn't retrieve the page",
+                    new Object[]{getName(),
+                        this.th.getMinsLeft(startTime)}
+            );
+            return FAILED;
+        }
+
+        int newPosts = FAILED;
+        this.posts.clear();
+        try (FetchResponse page = response) {
+            newPosts = this.parser.parse(
+                    task,
+                    page.getBody(),
+                    page.getCharset(),
+                    this.posts
+            );
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE,
+                    "thread " + getName()
+                    + " | not considered exception.", ex);
+        }
+
+        for (DigitalPost tweet : this.posts) {
+            // Every tweet is saved in the buffer if no miner has buffered
+            // it recently
+            long postId = tweet.getPostId();
+            if (this.seen.add(postId)) {
+                this.buffer.putIfAbsent(postId, tweet);
+            }
+
+            if (this.buffer.size() >= this.bufferSize) {
+                logger.log(Level.INFO,
+                        "thread {0} | mins_left: {1} | dumping...",
+                        new Object[]{getName(),
+                            this.th.getMinsLeft(startTime)}
+                );
+                this.buffer = this.th.dumpBuffer(this.buffer);
+            }
+        }
+
+        return newPosts;
+    }
+
     private void sleep_under_exception() {
         try {
             Thread.sleep(Conf.SLEEP.value() + 1000);
@@ -0,0 +1,371 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.threads;
+
+import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.dao.SeenPostsCache;
+import com.brunneis.polypus.polypus4t.net.FetchResponse;
+import com.brunneis.polypus.polypus4t.net.Fetcher;
+import com.brunneis.polypus.polypus4t.net.FetcherSingletonFactory;
+import com.brunneis.polypus.polypus4t.net.HttpStatusException;
+import com.brunneis.polypus.polypus4t.sched.TermScheduler;
+import com.brunneis.polypus.polypus4t.sched.TermTask;
+import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pipelined alternative to the ScraperMiner threads. Fetchers, parsers and a
+ * single buffering stage run as separate miner tasks, connected by bounded
+ * queues: a slow flush no longer stalls HTTP I/O, and when a stage falls
+ * behind the previous one blocks on the full queue instead of piling up
+ * pages in memory.
+ *
+ * @author brunneis
+ */
+public class ScraperPipeline implements Runnable {
+
+    private static final long REPORT_INTERVAL = 60000;
+
+    // Queue terminators
+    private static final FetchedPage END_OF_PAGES
+            = new FetchedPage(-1, null, null, null);
+    private static final List<DigitalPost> END_OF_BATCHES = new ArrayList<>(0);
+
+    private final String name;
+    private final TermScheduler scheduler;
+    private final Fetcher fetcher;
+    private final ThreadHelper th;
+    private final int fetchers;
+    private final int parsers;
+    private final ArrayBlockingQueue<FetchedPage> pages;
+    private final ArrayBlockingQueue<List<DigitalPost>> batches;
+    private final long startTime;
+
+    private Logger logger;
+
+    public ScraperPipeline(
+            String name,
+            TermScheduler scheduler,
+            int fetchers,
+            int parsers,
+            int queueSize
+    ) {
+        logger = Logger.getLogger(ScraperPipeline.class.getName());
+        logger.setLevel(Conf.LOGGER_LEVEL.value());
+
+        this.name = name;
+        this.scheduler = scheduler;
+        this.fetcher = FetcherSingletonFactory.getFetcherInstance();
+        this.th = new ThreadHelper();
+        this.fetchers = fetchers;
+        this.parsers = parsers;
+        this.pages = new ArrayBlockingQueue<>(queueSize);
+        this.batches = new ArrayBlockingQueue<>(queueSize);
+
+        // Initial date in ms
+        this.startTime = new Date().getTime();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getPagesQueueDepth() {
+        return this.pages.size();
+    }
+
+    public int getBatchesQueueDepth() {
+        return this.batches.size();
+    }
+
+    public void logQueueDepths() {
+        logger.log(Level.INFO,
+                "thread {0} | pages queued: {1}/{2} | batches queued: {3}/{4}",
+                new Object[]{getName(),
+                    this.pages.size(),
+                    this.pages.size() + this.pages.remainingCapacity(),
+                    this.batches.size(),
+                    this.batches.size() + this.batches.remainingCapacity()}
+        );
+    }
+
+    @Override
+    public void run() {
+        logger.log(Level.INFO, "thread {0} | starting job...", getName());
+
+        if (this.scheduler.size() == 0) {
+            logger.log(Level.INFO,
+                    "thread {0} | No target terms, job finished.", getName());
+            return;
+        }
+
+        // Stages are started downstream first
+        Future<?> bufferStage = MinerRuntime.submit(
+                "BUFFER", this::buffer
+        );
+        ArrayList<Future<?>> parseStage = new ArrayList<>();
+        for (int i = 0; i < this.parsers; i++) {
+            parseStage.add(MinerRuntime.submit(
+                    (i + 1) + "_PARSE", this::parse
+            ));
+        }
+        ArrayList<Future<?>> fetchStage = new ArrayList<>();
+        for (int i = 0; i < this.fetchers; i++) {
+            final int worker = i;
+            fetchStage.add(MinerRuntime.submit(
+                    (i + 1) + "_FETCH", () -> this.fetch(worker)
+            ));
+        }
+
+        try {
+            // Queue depths are reported while the fetchers are running
+            for (Future<?> stage : fetchStage) {
+                while (!this.await(stage, REPORT_INTERVAL)) {
+                    this.logQueueDepths();
+                }
+            }
+            this.logQueueDepths();
+
+            // Every stage drains its queue before finishing
+            for (int i = 0; i < this.parsers; i++) {
+                this.pages.put(END_OF_PAGES);
+            }
+            for (Future<?> stage : parseStage) {
+                this.await(stage, 0);
+            }
+            this.batches.put(END_OF_BATCHES);
+            this.await(bufferStage, 0);
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+
+        logger.log(Level.WARNING,
+                "thread {0} | job finished.", getName());
+    }
+
+    private void fetch(int worker) {
+        while (this.th.inTime(this.startTime)) {
+            TermTask task;
+            try {
+                task = this.scheduler.poll(worker, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+
+            byte[] body;
+            Charset charset;
+            try (FetchResponse response = ScraperMiner.fetchPage(
+                    this.fetcher,
+                    ScraperMiner.getSearchUrl(
+                            task.getLanguage(),
+                            task.getTerm(),
+                            task.getNewestPostId()
+                    ))) {
+                body = response.getBodyAsBytes();
+                charset = response.getCharset();
+            } catch (HttpStatusException ex) {
+                logger.log(Level.WARNING,
+                        "thread {0} | mins_left: {1} | couldn''t retrieve the page: HTTP {2}",
+                        new Object[]{Thread.currentThread().getName(),
+                            this.th.getMinsLeft(startTime),
+                            ex.getStatusCode()}
+                );
+                this.scheduler.fail(worker, task);
+                // The limiter already holds back every worker when throttled
+                if (Conf.RATE.value() == 0 || !ex.isThrottling()) {
+                    this.pause(Conf.SLEEP.value() + 1000);
+                }
+                continue;
+            } catch (IOException ex) {
+                logger.log(Level.WARNING,
+                        "thread {0} | mins_left: {1} | couldn't retrieve the page",
+                        new Object[]{Thread.currentThread().getName(),
+                            this.th.getMinsLeft(startTime)}
+                );
+                this.scheduler.fail(worker, task);
+                this.pause(Conf.SLEEP.value() + 1000);
+                continue;
+            }
+
+            try {
+                // Blocks while the parsers are behind
+                this.pages.put(new FetchedPage(worker, task, body, charset));
+            } catch (InterruptedException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                this.scheduler.fail(worker, task);
+                return;
+            }
+
+            if (Conf.RATE.value() == 0) {
+                // Without a rate limiter, requests are paced by SLEEP
+                this.pause(Conf.SLEEP.value());
+            }
+        }
+    }
+
+    private void parse() {
+        PageParser parser = new PageParser();
+        try {
+            while (true) {
+                FetchedPage page = this.pages.take();
+                if (page == END_OF_PAGES) {
+                    return;
+                }
+
+                ArrayList<DigitalPost> posts = new ArrayList<>();
+                int newPosts = -1;
+                try {
+                    newPosts = parser.parse(
+                            page.task,
+                            new ByteArrayInputStream(page.body),
+                            page.charset,
+                            posts
+                    );
+                } catch (Exception ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                } finally {
+                    // The watermark is updated, the term can be polled again
+                    if (newPosts < 0) {
+                        this.scheduler.fail(page.worker, page.task);
+                    } else {
+                        this.scheduler.release(page.worker, page.task, newPosts);
+                    }
+                }
+
+                if (!posts.isEmpty()) {
+                    // Blocks while the buffering stage is flushing
+                    this.batches.put(posts);
+                }
+            }
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void buffer() {
+        DigitalPostBuffer buffer = this.th.newBuffer(Conf.BUFFER.value());
+        SeenPostsCache seen = SeenPostsCache.getInstance();
+        try {
+            while (true) {
+                // Woken up every second to flush old buffers
+                List<DigitalPost> batch = this.batches.poll(1, TimeUnit.SECONDS);
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+                if (this.th.isFlushDue()) {
+                    logger.log(Level.INFO,
+                            "thread {0} | mins_left: {1} | dumping by age...",
+                            new Object[]{getName(),
+                                this.th.getMinsLeft(startTime)}
+                    );
+                    buffer = this.th.dumpBuffer(buffer);
+                }
+                if (batch == null) {
+                    continue;
+                }
+
+                for (DigitalPost tweet : batch) {
+                    // The tweet is added to the buffer if no miner has
+                    // buffered it recently
+                    long postId = tweet.getPostId();
+                    if (seen.add(postId)) {
+                        buffer.putIfAbsent(postId, tweet);
+                    }
+
+                    if (buffer.size() >= Conf.BUFFER.value()) {
+                        logger.log(Level.INFO,
+                                "thread {0} | mins_left: {1} | dumping...",
+                                new Object[]{getName(),
+                                    this.th.getMinsLeft(startTime)}
+                        );
+                        this.logQueueDepths();
+                        buffer = this.th.dumpBuffer(buffer);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        buffer = this.th.dumpBuffer(buffer);
+    }
+
+    /**
+     * Waits for a stage to finish, indefinitely if timeout is 0.
+     *
+     * @return false if the stage is still running
+     */
+    private boolean await(Future<?> stage, long timeout)
+            throws InterruptedException {
+        try {
+            if (timeout > 0) {
+                stage.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                stage.get();
+            }
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException ex) {
+            logger.log(Level.SEVERE, null, ex.getCause());
+        }
+        return true;
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private static class FetchedPage {
+
+        private final int worker;
+        private final TermTask task;
+        private final byte[] body;
+        private final Charset charset;
+
+        private FetchedPage(int worker, TermTask task, byte[] body, Charset charset) {
+            this.worker = worker;
+            this.task = task;
+            this.body = body;
+            this.charset = charset;
+        }
+
+    }
+
+}
@@ -20,9 +20,14 @@
 package com.brunneis.polypus.polypus4t.threads;
 
 import com.brunneis.polypus.polypus4t.conf.Conf;
+import com.brunneis.polypus.polypus4t.dao.SeenPostsCache;
 import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
+import com.brunneis.polypus.polypus4t.vo.PostSource;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,13 +39,18 @@ import twitter4j.TwitterStream;
 import twitter4j.TwitterStreamFactory;
 import twitter4j.conf.ConfigurationBuilder;
 
-public final class StreamingMiner extends Thread {
+public final class StreamingMiner implements Runnable {
 
-    private final HashMap<String, DigitalPost> buffer;
+    private final String name;
+    // Only handled by the consuming thread
+    private DigitalPostBuffer buffer;
     private final TwitterStream twitterStream;
     private long startTime;
     private final ThreadHelper th;
-    static int mcounter = 0;
+    private final SeenPostsCache seen;
+    // Statuses handed over by the stream listener
+    private final MpscRingBuffer<Status> statuses;
+    private final LongAdder dropped;
 
     private Logger logger;
 
@@ -48,9 +58,12 @@ public final class StreamingMiner extends Thread {
         logger = Logger.getLogger(StreamingMiner.class.getName());
         logger.setLevel(Conf.LOGGER_LEVEL.value());
 
-        super.setName(name);
-        this.buffer = new HashMap<>();
+        this.name = name;
         this.th = new ThreadHelper();
+        this.buffer = this.th.newBuffer(Conf.BUFFER.value());
+        this.seen = SeenPostsCache.getInstance();
+        this.statuses = new MpscRingBuffer<>(Conf.STREAMING_QUEUE.value());
+        this.dropped = new LongAdder();
 
         ConfigurationBuilder cb = new ConfigurationBuilder();
         cb.setDebugEnabled(false).setOAuthConsumerKey(Conf.TWITTER_CK.value())
@@ -61,6 +74,10 @@ public final class StreamingMiner extends Thread {
         this.twitterStream = tf.getInstance();
     }
 
+    public String getName() {
+        return this.name;
+    }
+
     @Override
     public void run() {
         logger.log(Level.INFO, "thread {0} | starting job...", getName());
@@ -68,85 +85,15 @@ public final class StreamingMiner extends Thread {
         // Initial date in ms
         this.startTime = new Date().getTime();
 
+        // The listener runs on the twitter4j dispatch thread, it only hands
+        // the matching statuses over and never blocks
         StatusListener listener = new StatusListener() {
             @Override
             public void onStatus(Status status) {
-
-                // Every matching tweet is saved in the HashMap buffer
-                if (Conf.LANGUAGES.value().contains(status.getLang())) {
-                    if (buffer.size() % 50 == 0) {
-                        logger.log(
-                                Level.FINE,
-                                "thread {0} | counter: {1}",
-                                new Object[]{getName(), buffer.size()}
-                        );
-                    }
-                    String content
-                            = status.getText();
-                    String language
-                            = status.getLang();
-                    String postId
-                            = String.valueOf(status.getId());
-                    String publicationTimestamp
-                            = String.valueOf(status.getCreatedAt().getTime());
-                    String authorNickname
-                            = status.getUser().getScreenName();
-                    String authorId
-                            = String.valueOf(status.getUser().getId());
-                    String authorName
-                            = String.valueOf(status.getUser().getName());
-
-                    DigitalPost tweet = new DigitalPost(
-                            "twttr",
-                            language,
-                            content,
-                            authorName,
-                            authorNickname,
-                            authorId,
-                            postId,
-                            publicationTimestamp,
-                            // getRelevance(authorNickname)
-                            null
-                    );
-
-                    synchronized (buffer) {
-                        // The tweet is added to the buffer if it is not
-                        // already there
-                        if (!buffer.containsKey(tweet.getPostId())) {
-                            buffer.put(tweet.getPostId(), tweet);
-                        }
-                    }
+                if (Conf.LANGUAGES.value().contains(status.getLang())
+                        && !statuses.offer(status)) {
+                    dropped.increment();
                 }
-
-                if (!th.inTime(startTime)) {
-                    // Sync only if not in time
-                    synchronized (buffer) {
-                        logger.log(Level.INFO,
-                                "thread {0} | mins_left: {1} | dumping...",
-                                new Object[]{getName(),
-                                    th.getMinsLeft(startTime)}
-                        );
-                        th.dumpBuffer(buffer);
-                        logger.log(Level.INFO,
-                                "thread {0} | job finished.", getName());
-                        twitterStream.shutdown();
-                        twitterStream.removeListener(this);
-                        return;
-                    }
-                }
-
-                if (buffer.size() >= Conf.BUFFER.value()) {
-                    // Sync only if not in time
-                    synchronized (buffer) {
-                        logger.log(Level.INFO,
-                                "thread {0} | mins_left: {1} | dumping...",
-                                new Object[]{getName(),
-                                    th.getMinsLeft(startTime)}
-                        );
-                        th.dumpBuffer(buffer);
-                    }
-                }
-
             }
 
             @Override
@@ -167,6 +114,12 @@ public final class StreamingMiner extends Thread {
             @Override
             public void onStallWarning(StallWarning warning
             ) {
+                logger.log(Level.WARNING,
+                        "thread {0} | stall warning: {1} ({2}% full)",
+                        new Object[]{getName(),
+                            warning.getMessage(),
+                            warning.getPercentFull()}
+                );
             }
 
             @Override
@@ -176,7 +129,82 @@ public final class StreamingMiner extends Thread {
 
         };
 
-        twitterStream.addListener(listener);
-        twitterStream.sample();
+        this.twitterStream.addListener(listener);
+        this.twitterStream.sample();
+
+        // This thread buffers the statuses and dumps the buffer
+        long nextReport = System.currentTimeMillis() + 60000;
+        long lastDropped = 0;
+        while (this.th.inTime(this.startTime)) {
+            Status status = this.statuses.poll();
+            if (status == null) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            } else {
+                add(status);
+            }
+
+            if (this.buffer.size() >= Conf.BUFFER.value()
+                    || this.th.isFlushDue()) {
+                logger.log(Level.INFO,
+                        "thread {0} | mins_left: {1} | dumping...",
+                        new Object[]{getName(),
+                            this.th.getMinsLeft(this.startTime)}
+                );
+                this.buffer = this.th.dumpBuffer(this.buffer);
+            }
+
+            long now = System.currentTimeMillis();
+            if (now >= nextReport) {
+                nextReport = now + 60000;
+                long total = this.dropped.sum();
+                if (total > lastDropped) {
+                    logger.log(Level.WARNING,
+                            "thread {0} | {1} statuses discarded, the queue was full",
+                            new Object[]{getName(), total - lastDropped}
+                    );
+                    lastDropped = total;
+                }
+            }
+        }
+
+        this.twitterStream.shutdown();
+        this.twitterStream.removeListener(listener);
+
+        // Statuses already handed over are not lost
+        Status status;
+        while ((status = this.statuses.poll()) != null) {
+            add(status);
+        }
+        logger.log(Level.INFO,
+                "thread {0} | mins_left: {1} | dumping...",
+                new Object[]{getName(),
+                    this.th.getMinsLeft(this.startTime)}
+        );
+        this.buffer = this.th.dumpBuffer(this.buffer);
+        logger.log(Level.INFO,
+                "thread {0} | job finished, {1} statuses discarded.",
+                new Object[]{getName(), this.dropped.sum()}
+        );
+    }
+
+    private void add(Status status) {
+        // The tweet is added to the buffer if no miner has buffered it
+        // recently
+        if (!this.seen.add(status.getId())) {
+            return;
+        }
+
+        DigitalPost tweet = new DigitalPost(
+                PostSource.TWITTER,
+                status.getLang(),
+                status.getText(),
+                String.valueOf(status.getUser().getName()),
+                status.getUser().getScreenName(),
+                status.getUser().getId(),
+                status.getId(),
+                status.getCreatedAt().getTime()
+                // getRelevance(authorNickname)
+        );
+        this.buffer.putIfAbsent(status.getId(), tweet);
     }
 }
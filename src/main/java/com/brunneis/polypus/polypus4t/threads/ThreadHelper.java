@@ -20,9 +20,9 @@
 package com.brunneis.polypus.polypus4t.threads;
 
 import com.brunneis.polypus.polypus4t.conf.Conf;
-import com.brunneis.polypus.polypus4t.dao.DigitalPostDAO;
-import com.brunneis.polypus.polypus4t.dao.DigitalPostSingletonFactoryDAO;
+import com.brunneis.polypus.polypus4t.dao.FlushService;
 import com.brunneis.polypus.polypus4t.vo.DigitalPost;
+import com.brunneis.polypus.polypus4t.vo.DigitalPostBuffer;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
 import com.gargoylesoftware.htmlunit.WebClient;
@@ -30,8 +30,13 @@ import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import java.io.IOException;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.logging.LogFactory;
@@ -45,24 +50,122 @@ import org.w3c.css.sac.ErrorHandler;
  */
 public class ThreadHelper {
 
-    private final DigitalPostDAO dpdao;
+    // Shared by every miner, flags the buffers older than FLUSH_MAX_MS
+    private static ScheduledExecutorService ageTimer = null;
+    // Buffers being filled that hold posts, until handed off
+    private static final ConcurrentHashMap<DigitalPostBuffer, ThreadHelper> WATCHED
+            = new ConcurrentHashMap<>();
+
+    private final FlushService flushService;
+    // Written buffers, given back to the miner on the next dumps
+    private final ConcurrentLinkedQueue<DigitalPostBuffer> spares;
+    // Buffer being filled by the miner
+    private volatile DigitalPostBuffer current;
+    private volatile boolean flushDue;
+    // Only used by the miner thread
+    private DigitalPostBuffer watched;
+    private int bufferSize;
     private Logger logger;
 
     public ThreadHelper() {
-        this.dpdao = DigitalPostSingletonFactoryDAO.getDigitalPostDAOinstance();
+        this.flushService = FlushService.getInstance();
+        this.spares = new ConcurrentLinkedQueue<>();
+        this.current = null;
+        this.flushDue = false;
         logger = Logger.getLogger(ScraperMiner.class.getName());
         logger.setLevel(Conf.LOGGER_LEVEL.value());
     }
 
-    public void dumpBuffer(HashMap<String, DigitalPost> buffer) {
-        HashMap<String, DigitalPost> deepCopy = new HashMap<>();
+    /**
+     * Creates the first buffer of a miner, the next ones have the same size.
+     */
+    public DigitalPostBuffer newBuffer(int expected) {
+        this.bufferSize = expected;
+        this.current = new DigitalPostBuffer(expected);
+        return this.current;
+    }
 
-        buffer.keySet().forEach((key) -> {
-            deepCopy.put(key, new DigitalPost(buffer.get(key)));
-        });
-        buffer.clear();
+    /**
+     * @return true if the buffer being filled is older than FLUSH_MAX_MS and
+     * has to be dumped whatever its size
+     */
+    public boolean isFlushDue() {
+        // Its age is watched from the first post until handed off
+        DigitalPostBuffer buffer = this.current;
+        if (buffer != null && buffer != this.watched
+                && buffer.getFirstPutTime() > 0) {
+            this.watched = buffer;
+            watch(buffer, this);
+        }
+        return this.flushDue;
+    }
+
+    /**
+     * Hands a buffer over to the flush service. The buffer is sealed and
+     * must not be used by the caller anymore, which keeps on filling the
+     * returned one.
+     *
+     * @return an empty buffer, recycled from a previous dump if possible
+     */
+    public DigitalPostBuffer dumpBuffer(DigitalPostBuffer buffer) {
+        this.flushDue = false;
+        if (buffer.isEmpty()) {
+            return buffer;
+        }
+
+        WATCHED.remove(buffer);
+        this.watched = null;
+        DigitalPostBuffer next = this.spares.poll();
+        if (next == null) {
+            next = new DigitalPostBuffer(this.bufferSize);
+        }
+        this.current = next;
 
-        dpdao.dumpBuffer(deepCopy);
+        buffer.seal();
+        // Once written it is added to the spares
+        this.flushService.flush(buffer, this.spares);
+        return next;
+    }
+
+    private synchronized static void watch(
+            DigitalPostBuffer buffer,
+            ThreadHelper helper
+    ) {
+        long maxAge = Conf.FLUSH_MAX_MS.value();
+        if (maxAge <= 0) {
+            return;
+        }
+
+        WATCHED.put(buffer, helper);
+        if (ageTimer == null) {
+            ageTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "FLUSH_TIMER");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Buffers are flushed at most a quarter of FLUSH_MAX_MS late
+            long period = Math.max(50, maxAge / 4);
+            ageTimer.scheduleAtFixedRate(
+                    () -> checkAges(maxAge),
+                    period,
+                    period,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    private static void checkAges(long maxAge) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<DigitalPostBuffer, ThreadHelper> entry : WATCHED.entrySet()) {
+            DigitalPostBuffer buffer = entry.getKey();
+            ThreadHelper helper = entry.getValue();
+            long firstPutTime = buffer.getFirstPutTime();
+            // Skipped if it was just handed off
+            if (helper.current == buffer && firstPutTime > 0
+                    && now - firstPutTime >= maxAge) {
+                helper.flushDue = true;
+            }
+        }
     }
 
     public boolean inTime(long startTime) {
@@ -20,132 +20,173 @@
 package com.brunneis.polypus.polypus4t.vo;
 
 import com.brunneis.polypus.polypus4t.dao.RowKeyHelper;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Esta clase se corresponde con el contenido almacenado en HBase
  *
+ * Ids are kept as longs and the texts as UTF-8, the way they are written,
+ * so they are encoded only once.
+ *
  * @author brunneis
  */
 public class DigitalPost {
 
-    private String source;
-    private String id;
-    private String language;
-    private String content;
-    private String authorName;
-    private String authorNickname;
-    private String authorId;
-    private String postId;
-    private Long publicationTimestamp;
+    // Shared by every post with the same language code
+    private static final ConcurrentHashMap<String, Language> LANGUAGES
+            = new ConcurrentHashMap<>();
+
+    private final PostSource source;
+    private byte[] rowKey;
+    private final Language language;
+    private final byte[] content;
+    private final byte[] authorName;
+    private final byte[] authorNickname;
+    private final long authorId;
+    private final long postId;
+    private final long publicationTimestamp;
     private Integer sentiment;
 
     public DigitalPost(
-            String source,
+            PostSource source,
             String language,
             String content,
             String authorName,
             String authorNickname,
-            String authorId,
-            String postId,
-            String publicationTimestamp,
-            Double relevance
+            long authorId,
+            long postId,
+            long publicationTimestamp
+    ) {
+        this(
+                source,
+                language,
+                content.getBytes(StandardCharsets.UTF_8),
+                authorName.getBytes(StandardCharsets.UTF_8),
+                authorNickname.getBytes(StandardCharsets.UTF_8),
+                authorId,
+                postId,
+                publicationTimestamp
+        );
+    }
+
+    /**
+     * The arrays are kept as they are, encoded in UTF-8.
+     */
+    public DigitalPost(
+            PostSource source,
+            String language,
+            byte[] content,
+            byte[] authorName,
+            byte[] authorNickname,
+            long authorId,
+            long postId,
+            long publicationTimestamp
     ) {
         this.source = source;
-        this.id = RowKeyHelper.generateId(source);
-        this.language = language;
+        this.language = resolveLanguage(language);
         this.content = content;
         this.authorName = authorName;
         this.authorNickname = authorNickname;
         this.authorId = authorId;
         this.postId = postId;
-        this.publicationTimestamp = Long.parseLong(publicationTimestamp);
+        this.publicationTimestamp = publicationTimestamp;
     }
 
-    public DigitalPost(DigitalPost dp) {
-        this.source = dp.getSource();
-        this.id = dp.getId();
-        this.language = dp.getLanguage();
-        this.content = dp.getContent();
-        this.authorName = dp.getAuthorName();
-        this.authorNickname = dp.getAuthorNickname();
-        this.authorId = dp.getAuthorId();
-        this.postId = dp.getPostId();
-        this.publicationTimestamp = dp.getPublicationTimestamp();
-        this.sentiment = dp.getSentiment();
+    private static Language resolveLanguage(String code) {
+        Language language = LANGUAGES.get(code);
+        if (language == null) {
+            Language created = new Language(code);
+            language = LANGUAGES.putIfAbsent(code, created);
+            if (language == null) {
+                language = created;
+            }
+        }
+        return language;
     }
 
-    public String getSource() {
-        return source;
+    /**
+     * A language code and its UTF-8 bytes.
+     */
+    private static final class Language {
+
+        private final String code;
+        private final byte[] bytes;
+
+        private Language(String code) {
+            this.code = code;
+            this.bytes = code.getBytes(StandardCharsets.UTF_8);
+        }
+
     }
 
-    public void setSource(String source) {
-        this.source = source;
+    public PostSource getSource() {
+        return source;
     }
 
+    /**
+     * @return the row key, only assigned by the DAO to the posts it persists
+     */
     public String getId() {
-        return id;
+        return (rowKey == null) ? null : RowKeyHelper.toString(rowKey);
+    }
+
+    public byte[] getRowKey() {
+        return rowKey;
     }
 
-    public void setId(String id) {
-        this.id = id;
+    public void setRowKey(byte[] rowKey) {
+        this.rowKey = rowKey;
     }
 
     public String getLanguage() {
-        return language;
+        return language.code;
     }
 
-    public void setLanguage(String language) {
-        this.language = language;
+    /**
+     * The byte arrays returned by the getters are shared and must not be
+     * modified.
+     */
+    public byte[] getLanguageBytes() {
+        return language.bytes;
     }
 
     public String getContent() {
-        return content;
+        return new String(content, StandardCharsets.UTF_8);
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    public byte[] getContentBytes() {
+        return content;
     }
 
     public String getAuthorName() {
-        return authorName;
+        return new String(authorName, StandardCharsets.UTF_8);
     }
 
-    public void setAuthorName(String authorName) {
-        this.authorName = authorName;
+    public byte[] getAuthorNameBytes() {
+        return authorName;
     }
 
     public String getAuthorNickname() {
-        return authorNickname;
+        return new String(authorNickname, StandardCharsets.UTF_8);
     }
 
-    public void setAuthorNickname(String authorNickname) {
-        this.authorNickname = authorNickname;
+    public byte[] getAuthorNicknameBytes() {
+        return authorNickname;
     }
 
-    public String getAuthorId() {
+    public long getAuthorId() {
         return authorId;
     }
 
-    public void setAuthorId(String authorId) {
-        this.authorId = authorId;
-    }
-
-    public String getPostId() {
+    public long getPostId() {
         return postId;
     }
 
-    public void setPostId(String postId) {
-        this.postId = postId;
-    }
-
-    public Long getPublicationTimestamp() {
+    public long getPublicationTimestamp() {
         return publicationTimestamp;
     }
 
-    public void setPublicationTimestamp(Long publicationTimestamp) {
-        this.publicationTimestamp = publicationTimestamp;
-    }
-
     public Integer getSentiment() {
         return sentiment;
     }
@@ -0,0 +1,235 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.vo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Buffer of posts keyed by their numeric post id, an open-addressing table
+ * of primitive longs: no boxed key, String hash or map entry per post. Not
+ * thread-safe.
+ *
+ * A buffer is sealed when handed off to be written, from then on it can't be
+ * modified until its new owner recycles it.
+ *
+ * @author brunneis
+ */
+public class DigitalPostBuffer implements Iterable<DigitalPost> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // 0 marks an empty slot, linear probing
+    private long[] keys;
+    private DigitalPost[] posts;
+    private int mask;
+    private int threshold;
+    private int size;
+    private boolean sealed;
+    // When the oldest post was added (ms), 0 if empty. Read by other threads
+    // to flush old buffers.
+    private volatile long firstPutTime;
+
+    public DigitalPostBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param expected number of posts that fit without resizing
+     */
+    public DigitalPostBuffer(int expected) {
+        this.allocate(tableSize(expected));
+    }
+
+    /**
+     * Adds a post unless there is already one with the same id.
+     *
+     * @return false if the post id was already in the buffer
+     */
+    public boolean putIfAbsent(long postId, DigitalPost post) {
+        this.checkNotSealed();
+        if (postId <= 0) {
+            throw new IllegalArgumentException("Invalid post id " + postId);
+        }
+
+        int slot = this.find(postId);
+        if (this.keys[slot] == postId) {
+            return false;
+        }
+        this.keys[slot] = postId;
+        this.posts[slot] = post;
+        if (this.size == 0) {
+            this.firstPutTime = System.currentTimeMillis();
+        }
+        if (++this.size > this.threshold) {
+            this.rehash(this.keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean containsKey(long postId) {
+        return postId > 0 && this.keys[this.find(postId)] == postId;
+    }
+
+    public DigitalPost get(long postId) {
+        if (postId <= 0) {
+            return null;
+        }
+        int slot = this.find(postId);
+        return (this.keys[slot] == postId) ? this.posts[slot] : null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes every post, the table is kept for reuse.
+     */
+    public void clear() {
+        this.checkNotSealed();
+        if (this.size > 0) {
+            Arrays.fill(this.keys, 0);
+            Arrays.fill(this.posts, null);
+            this.size = 0;
+            this.firstPutTime = 0;
+        }
+    }
+
+    /**
+     * @return when the oldest post of the buffer was added (ms), 0 if empty
+     */
+    public long getFirstPutTime() {
+        return this.firstPutTime;
+    }
+
+    /**
+     * Makes the buffer read-only, before handing it off.
+     */
+    public void seal() {
+        this.sealed = true;
+    }
+
+    public boolean isSealed() {
+        return this.sealed;
+    }
+
+    /**
+     * Empties a sealed buffer so it can be filled again. Only to be called by
+     * the owner of the buffer once it has been written.
+     */
+    public void recycle() {
+        this.sealed = false;
+        this.clear();
+    }
+
+    @Override
+    public Iterator<DigitalPost> iterator() {
+        return new Iterator<DigitalPost>() {
+
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                while (from < keys.length && keys[from] == 0) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.slot < keys.length;
+            }
+
+            @Override
+            public DigitalPost next() {
+                if (this.slot >= keys.length) {
+                    throw new NoSuchElementException();
+                }
+                DigitalPost post = posts[this.slot];
+                this.slot = this.advance(this.slot + 1);
+                return post;
+            }
+
+        };
+    }
+
+    private void checkNotSealed() {
+        if (this.sealed) {
+            throw new IllegalStateException("The buffer was already handed off");
+        }
+    }
+
+    /**
+     * @return the slot holding the post id, or the empty slot where it
+     * would be placed
+     */
+    private int find(long postId) {
+        int slot = mix(postId) & this.mask;
+        while (this.keys[slot] != 0 && this.keys[slot] != postId) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        DigitalPost[] oldPosts = this.posts;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = this.find(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.posts[slot] = oldPosts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.posts = new DigitalPost[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSize(int expected) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(long key) {
+        // Murmur3 finalizer, tweet ids have low-entropy low bits
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+}
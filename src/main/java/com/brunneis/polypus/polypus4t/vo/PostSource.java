@@ -0,0 +1,67 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.vo;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Origin of the posts, the code is part of the row keys and of the
+ * Aerospike namespaces.
+ *
+ * @author brunneis
+ */
+public enum PostSource {
+
+    TWITTER("twttr");
+
+    private final String code;
+    private final byte[] codeBytes;
+
+    private PostSource(String code) {
+        this.code = code;
+        this.codeBytes = code.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * @return the UTF-8 code, not to be modified
+     */
+    public byte[] getCodeBytes() {
+        return codeBytes;
+    }
+
+    public static PostSource fromCode(String code) {
+        for (PostSource source : values()) {
+            if (source.code.equals(code)) {
+                return source;
+            }
+        }
+        throw new IllegalArgumentException("Unknown source: " + code);
+    }
+
+    @Override
+    public String toString() {
+        return this.code;
+    }
+
+}
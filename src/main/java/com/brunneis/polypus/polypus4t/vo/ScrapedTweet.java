@@ -0,0 +1,141 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.vo;
+
+/**
+ * Mutable record filled by the TweetExtractor for every tweet container. It
+ * is meant to be reused across tweets: ids are parsed in place and texts are
+ * copied into buffers owned by the record, so filling it allocates nothing.
+ *
+ * @author brunneis
+ */
+public class ScrapedTweet {
+
+    // -1 if missing
+    private long postId;
+    private long authorId;
+    private long publicationTimestamp;
+    // Null getters if missing
+    private final StringBuilder authorNickname;
+    private final StringBuilder authorName;
+    private final StringBuilder language;
+    private final StringBuilder content;
+    private boolean hasAuthorNickname;
+    private boolean hasAuthorName;
+    private boolean hasLanguage;
+    private boolean hasContent;
+
+    public ScrapedTweet() {
+        this.authorNickname = new StringBuilder(32);
+        this.authorName = new StringBuilder(64);
+        this.language = new StringBuilder(8);
+        this.content = new StringBuilder(512);
+        this.reset();
+    }
+
+    public void reset() {
+        this.postId = -1;
+        this.authorId = -1;
+        this.publicationTimestamp = -1;
+        this.hasAuthorNickname = copy(null, this.authorNickname);
+        this.hasAuthorName = copy(null, this.authorName);
+        this.hasLanguage = copy(null, this.language);
+        this.hasContent = copy(null, this.content);
+    }
+
+    public boolean isComplete() {
+        return this.postId >= 0
+                && this.authorId >= 0
+                && this.hasAuthorNickname
+                && this.hasAuthorName
+                && this.hasLanguage
+                && this.hasContent
+                && this.publicationTimestamp >= 0;
+    }
+
+    private static boolean copy(CharSequence value, StringBuilder target) {
+        target.setLength(0);
+        if (value == null) {
+            return false;
+        }
+        target.append(value);
+        return true;
+    }
+
+    public long getPostId() {
+        return postId;
+    }
+
+    public void setPostId(long postId) {
+        this.postId = postId;
+    }
+
+    public long getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(long authorId) {
+        this.authorId = authorId;
+    }
+
+    /**
+     * The returned sequences are only valid until the record is reset.
+     */
+    public CharSequence getAuthorNickname() {
+        return hasAuthorNickname ? authorNickname : null;
+    }
+
+    public void setAuthorNickname(CharSequence authorNickname) {
+        this.hasAuthorNickname = copy(authorNickname, this.authorNickname);
+    }
+
+    public CharSequence getAuthorName() {
+        return hasAuthorName ? authorName : null;
+    }
+
+    public void setAuthorName(CharSequence authorName) {
+        this.hasAuthorName = copy(authorName, this.authorName);
+    }
+
+    public CharSequence getLanguage() {
+        return hasLanguage ? language : null;
+    }
+
+    public void setLanguage(CharSequence language) {
+        this.hasLanguage = copy(language, this.language);
+    }
+
+    public CharSequence getContent() {
+        return hasContent ? content : null;
+    }
+
+    public void setContent(CharSequence content) {
+        this.hasContent = copy(content, this.content);
+    }
+
+    public long getPublicationTimestamp() {
+        return publicationTimestamp;
+    }
+
+    public void setPublicationTimestamp(long publicationTimestamp) {
+        this.publicationTimestamp = publicationTimestamp;
+    }
+
+}
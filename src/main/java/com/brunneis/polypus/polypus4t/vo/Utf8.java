@@ -0,0 +1,104 @@
+/*
+    Polypus: a Big Data Self-Deployable Architecture for Microblogging 
+    Text Extraction and Real-Time Sentiment Analysis
+
+    Copyright (C) 2017 Rodrigo Martínez (brunneis) <dev@brunneis.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.brunneis.polypus.polypus4t.vo;
+
+/**
+ * UTF-8 encoding of character sequences straight into an array of the exact
+ * size, with the same output as String.getBytes(UTF_8) but without building
+ * the String first.
+ *
+ * @author brunneis
+ */
+public final class Utf8 {
+
+    private Utf8() {
+    }
+
+    public static byte[] encode(CharSequence cs) {
+        int length = cs.length();
+        byte[] bytes = new byte[encodedLength(cs)];
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                bytes[j++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[j++] = (byte) (0xC0 | (c >> 6));
+                bytes[j++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                int codePoint = codePointAt(cs, i);
+                if (codePoint < 0) {
+                    // Unpaired surrogates are replaced, as String does
+                    bytes[j++] = '?';
+                } else {
+                    bytes[j++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[j++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[j++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[j++] = (byte) (0x80 | (codePoint & 0x3F));
+                    i++;
+                }
+            } else {
+                bytes[j++] = (byte) (0xE0 | (c >> 12));
+                bytes[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[j++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    public static int encodedLength(CharSequence cs) {
+        int length = cs.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (codePointAt(cs, i) < 0) {
+                    bytes++;
+                } else {
+                    bytes += 4;
+                    i++;
+                }
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the supplementary code point starting at i, or -1 if the
+     * surrogate there is unpaired
+     */
+    private static int codePointAt(CharSequence cs, int i) {
+        char high = cs.charAt(i);
+        if (Character.isHighSurrogate(high) && i + 1 < cs.length()) {
+            char low = cs.charAt(i + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        return -1;
+    }
+
+}